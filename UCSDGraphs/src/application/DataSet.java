@@ -3,6 +3,9 @@ package application;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 import geography.GeographicPoint;
 import util.GraphLoader;
@@ -20,6 +23,8 @@ public class DataSet {
 	Set<GeographicPoint> intersections;
     private HashMap<geography.GeographicPoint,HashSet<geography.RoadSegment>>  roads;
 	boolean currentlyDisplayed;
+    // The background load started by preload, or null
+    private CompletableFuture<Void> preloading;
 
 	public DataSet (String path) {
         this.filePath = path;
@@ -57,12 +62,50 @@ public class DataSet {
     
     public HashMap<geography.GeographicPoint,HashSet<geography.RoadSegment>>  getRoads() { return this.roads; }
 
+    /**
+     * Load the graph, unless preload has already loaded it, in which case
+     * this waits for that load to finish and keeps its result.
+     */
     public void initializeGraph() {
-        graph = new roadgraph.MapGraph();
-        roads = new HashMap<geography.GeographicPoint, HashSet<geography.RoadSegment>>();
-        intersections = new HashSet<GeographicPoint>();
+        CompletableFuture<Void> pending = getPreloading();
+        if (pending != null) {
+            try {
+                pending.join();
+                return;
+            } catch (CompletionException e) {
+                // The background load failed: try again here
+                e.printStackTrace();
+            }
+        }
+        load();
+    }
+
+    /**
+     * Start loading the graph in the background, so displaying this data
+     * set later does not wait for it.  Does nothing if a background load
+     * has already been started.
+     * @param executor Where to run the load
+     */
+    public synchronized void preload(Executor executor) {
+        if (preloading == null) {
+            preloading = CompletableFuture.runAsync(this::load, executor);
+        }
+    }
+
+    private synchronized CompletableFuture<Void> getPreloading() {
+        return preloading;
+    }
+
+    private void load() {
+        roadgraph.MapGraph graph = new roadgraph.MapGraph();
+        HashMap<geography.GeographicPoint,HashSet<geography.RoadSegment>> roads =
+                new HashMap<geography.GeographicPoint, HashSet<geography.RoadSegment>>();
+        Set<GeographicPoint> intersections = new HashSet<GeographicPoint>();
         //TODO: change to use intersections for points in graph.
     	GraphLoader.loadRoadMap(filePath, graph, roads, intersections);
+        this.graph = graph;
+        this.roads = roads;
+        this.intersections = intersections;
     }
 
 	public boolean isDisplayed() {
@@ -3,6 +3,8 @@ package application.controllers;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.FileReader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import com.sun.javafx.geom.Rectangle;
 
@@ -41,6 +43,15 @@ public class FetchController {
     // path for mapfiles to load when program starts
     private String persistPath = "data/maps/mapfiles.list";
 
+    // Whether to load all the listed data sets in the background at start
+    // up, so switching between them does not wait.  -Dmapapp.preload=false
+    // turns it off.
+    private static final boolean PRELOAD =
+            !"false".equalsIgnoreCase(System.getProperty("mapapp.preload"));
+    // Leave a core for the UI
+    private static final int PRELOAD_THREADS =
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
 
     public FetchController(GeneralService generalService, RouteService routeService, TextField writeFile,
     					   Button fetchButton, ComboBox<DataSet> cb, Button displayButton) {
@@ -54,6 +65,9 @@ public class FetchController {
         setupFetchButton();
         setupDisplayButton();
         loadDataSets();
+        if (PRELOAD) {
+            preloadDataSets();
+        }
 
     }
 
@@ -72,6 +86,24 @@ public class FetchController {
 			e.printStackTrace();
 		}
     }
+    /**
+     * Load every listed data set on a small pool of low priority daemon
+     * threads.  The pool is shut down once the loads are queued, so its
+     * threads go away when they are done.
+     */
+    private void preloadDataSets() {
+        ExecutorService pool = Executors.newFixedThreadPool(PRELOAD_THREADS, r -> {
+            Thread t = new Thread(r, "map-preload");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        for (DataSet dataSet : dataChoices.getItems()) {
+            dataSet.preload(pool);
+        }
+        pool.shutdown();
+    }
+
     private void setupComboCells() {
     	//dataChoices.setVisibleRowCount(ROW_COUNT);
     	dataChoices.setCellFactory(new Callback<ListView<DataSet>, ListCell<DataSet>>() {
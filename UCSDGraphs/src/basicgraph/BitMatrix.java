@@ -0,0 +1,264 @@
+package basicgraph;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** A square boolean matrix with its rows packed 64 entries to a long.
+ * Entry (i, j) is bit j % 64 of word j / 64 of row i.
+ *
+ * The boolean product is computed against the transpose of the right
+ * hand matrix, so entry (i, j) of the product is one AND of two packed
+ * rows: 64 multiply-adds of the int[][] product at a time.  The rows
+ * are multiplied in blocks that fit in cache, in parallel on the common
+ * ForkJoinPool.
+ *
+ * @author UCSD MOOC development team and YOU
+ *
+ */
+public class BitMatrix {
+	// Rows and columns per block of the product.  A block of the
+	// transposed matrix is BLOCK rows of words, 512KB at n = 65536.
+	private static final int BLOCK = 64;
+	// Below this many rows a product is not split further
+	private static final int SEQUENTIAL_ROWS = 2 * BLOCK;
+
+	private final int n;
+	private final int words;		//longs per row
+	private final long[] bits;		//row i is bits[i*words .. (i+1)*words-1]
+
+	/** Create an n by n matrix of zeros
+	 * @param n The number of rows and columns
+	 * @throws IllegalArgumentException If n is negative, or so large that
+	 *   the matrix does not fit in one array (about 370,000)
+	 */
+	public BitMatrix(int n) {
+		if (n < 0) {
+			throw new IllegalArgumentException("Negative matrix size: " + n);
+		}
+		this.n = n;
+		this.words = (n + 63) >>> 6;
+		long length = (long)n * words;
+		if (length > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("A " + n + "x" + n + " matrix needs "
+					+ length + " longs, more than one array can hold");
+		}
+		this.bits = new long[(int)length];
+	}
+
+	/*
+	 *  A copy of another matrix
+	 */
+	private BitMatrix(BitMatrix other) {
+		this.n = other.n;
+		this.words = other.words;
+		this.bits = other.bits.clone();
+	}
+
+	/**
+	 * The matrix with a one where an int matrix is not zero.
+	 * @param m The int matrix.  It may be larger than n by n; the
+	 *   rest is ignored.
+	 * @param n The number of rows and columns to take
+	 * @return The boolean matrix
+	 */
+	public static BitMatrix fromCounts(int[][] m, int n) {
+		BitMatrix b = new BitMatrix(n);
+		for (int i = 0; i < n; i++) {
+			int base = i * b.words;
+			for (int j = 0; j < n; j++) {
+				if (m[i][j] != 0) {
+					b.bits[base + (j >>> 6)] |= 1L << j;
+				}
+			}
+		}
+		return b;
+	}
+
+	/** @return The number of rows and columns */
+	public int size() {
+		return n;
+	}
+
+	/**
+	 * @param i The row
+	 * @param j The column
+	 * @return Whether entry (i, j) is one
+	 */
+	public boolean get(int i, int j) {
+		return (bits[i * words + (j >>> 6)] & (1L << j)) != 0;
+	}
+
+	/**
+	 * Set entry (i, j) to one
+	 * @param i The row
+	 * @param j The column
+	 */
+	public void set(int i, int j) {
+		bits[i * words + (j >>> 6)] |= 1L << j;
+	}
+
+	/**
+	 * @param i The row
+	 * @return The number of ones in row i
+	 */
+	public int rowCount(int i) {
+		int count = 0;
+		for (int w = i * words; w < (i + 1) * words; w++) {
+			count += Long.bitCount(bits[w]);
+		}
+		return count;
+	}
+
+	/** @return The transpose of this matrix */
+	public BitMatrix transpose() {
+		BitMatrix t = new BitMatrix(n);
+		for (int i = 0; i < n; i++) {
+			int base = i * words;
+			for (int w = 0; w < words; w++) {
+				long word = bits[base + w];
+				while (word != 0) {
+					int j = (w << 6) + Long.numberOfTrailingZeros(word);
+					t.bits[j * words + (i >>> 6)] |= 1L << i;
+					word &= word - 1;
+				}
+			}
+		}
+		return t;
+	}
+
+	/**
+	 * The boolean product of this matrix and another of the same size:
+	 * entry (i, j) is one when some k has (i, k) one here and (k, j) one
+	 * in other.  For adjacency matrices, that is when there is a walk
+	 * from i to j of one edge in this graph then one in the other.
+	 * @param other The right hand matrix
+	 * @return The product
+	 */
+	public BitMatrix multiply(BitMatrix other) {
+		if (other.n != n) {
+			throw new IllegalArgumentException("Can not multiply a " + n + "x" + n
+					+ " matrix by a " + other.n + "x" + other.n + " matrix");
+		}
+		BitMatrix product = new BitMatrix(n);
+		BitMatrix columns = other.transpose();
+		if (n <= SEQUENTIAL_ROWS) {
+			multiplyRows(columns, product, 0, n);
+		}
+		else {
+			ForkJoinPool.commonPool().invoke(new MultiplyTask(columns, product, 0, n));
+		}
+		return product;
+	}
+
+	/**
+	 * This matrix raised to a power, by repeated squaring
+	 * @param k The power, at least 1
+	 * @return The product of k copies of this matrix, a new matrix
+	 *   even when k is 1
+	 */
+	public BitMatrix power(int k) {
+		if (k < 1) {
+			throw new IllegalArgumentException("Power must be at least 1: " + k);
+		}
+		BitMatrix result = null;
+		BitMatrix square = this;
+		while (true) {
+			if ((k & 1) != 0) {
+				result = (result == null) ? new BitMatrix(square) : result.multiply(square);
+			}
+			k >>>= 1;
+			if (k == 0) {
+				return result;
+			}
+			square = square.multiply(square);
+		}
+	}
+
+	/*
+	 *  Rows from..to-1 of the product, given the transpose of the right
+	 *  hand matrix.  Works through BLOCK x BLOCK tiles of the product so
+	 *  the rows of both matrices that a tile needs stay in cache.  Only
+	 *  these rows of product are written.
+	 */
+	private void multiplyRows(BitMatrix columns, BitMatrix product, int from, int to) {
+		long[] a = bits;
+		long[] b = columns.bits;
+		long[] c = product.bits;
+		boolean[] emptyRow = new boolean[BLOCK];
+		for (int i0 = from; i0 < to; i0 += BLOCK) {
+			int i1 = Math.min(i0 + BLOCK, to);
+			// Rows with no ones give rows of zeros; find them once per block
+			for (int i = i0; i < i1; i++) {
+				emptyRow[i - i0] = isRowEmpty(i);
+			}
+			for (int j0 = 0; j0 < n; j0 += BLOCK) {
+				int j1 = Math.min(j0 + BLOCK, n);
+				for (int i = i0; i < i1; i++) {
+					if (emptyRow[i - i0]) continue;
+					int rowA = i * words;
+					long found = 0;		//bit j - j0 is entry (i, j)
+					for (int j = j0; j < j1; j++) {
+						int rowB = j * words;
+						for (int w = 0; w < words; w++) {
+							if ((a[rowA + w] & b[rowB + w]) != 0) {
+								found |= 1L << (j - j0);
+								break;
+							}
+						}
+					}
+					// j0 is a multiple of 64, so the tile is one word of the row
+					c[i * words + (j0 >>> 6)] |= found;
+				}
+			}
+		}
+	}
+
+	private boolean isRowEmpty(int i) {
+		for (int w = i * words; w < (i + 1) * words; w++) {
+			if (bits[w] != 0) return false;
+		}
+		return true;
+	}
+
+	/*
+	 *  Split the rows of the product in half until there are few enough
+	 *  to do in one task.  Splits are at multiples of BLOCK.
+	 */
+	private class MultiplyTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final BitMatrix columns;
+		private final BitMatrix product;
+		private final int from, to;
+
+		MultiplyTask(BitMatrix columns, BitMatrix product, int from, int to) {
+			this.columns = columns;
+			this.product = product;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= SEQUENTIAL_ROWS) {
+				multiplyRows(columns, product, from, to);
+				return;
+			}
+			int mid = from + ((to - from) / 2 / BLOCK) * BLOCK;
+			invokeAll(new MultiplyTask(columns, product, from, mid),
+					  new MultiplyTask(columns, product, mid, to));
+		}
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof BitMatrix)) return false;
+		BitMatrix other = (BitMatrix)o;
+		return n == other.n && Arrays.equals(bits, other.bits);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(bits);
+	}
+}
@@ -1,12 +1,12 @@
 package basicgraph;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.stream.IntStream;
 
 import util.GraphLoader;
 
@@ -51,6 +51,7 @@ public abstract class Graph {
 		GraphAdjList airportGraph = new GraphAdjList();
 		GraphLoader.loadRoutes("data/airports/routesUA.dat", airportGraph);
 		System.out.println(airportGraph);
+		System.out.println(new GraphStats(airportGraph));
 		System.out.println("Observe most degrees are small (1-30), eight are over 100.");
 		System.out.println("****");
 		
@@ -65,8 +66,10 @@ public abstract class Graph {
 	private int numVertices;
 	private int numEdges;
 	
-	//optional association of String labels to vertices 
-	private Map<Integer,String> vertexLabels;
+	//optional association of String labels to vertices, both ways:
+	//vertex index -> label (null if unlabeled) and label -> vertex index
+	private ArrayList<String> vertexLabels;
+	private Map<String,Integer> labelIndices;
 
 	
 	/**
@@ -100,9 +103,16 @@ public abstract class Graph {
 	 * @param The label to be assigned to this vertex.
 	 */
 	public void addLabel(int v, String s) {
-		if (v < getNumVertices() && !vertexLabels.containsKey(v)) 
+		if (v < getNumVertices() && getLabel(v) == null) 
 		{
-			vertexLabels.put(v, s);
+			while (vertexLabels.size() <= v) {
+				vertexLabels.add(null);
+			}
+			vertexLabels.set(v, s);
+			//with duplicate labels, the first vertex labeled keeps the label
+			if (!labelIndices.containsKey(s)) {
+				labelIndices.put(s, v);
+			}
 		}
 		else {
 			System.out.println("ERROR: tried to label a vertex that is out of range or already labeled");
@@ -138,12 +148,23 @@ public abstract class Graph {
 	public List<Integer> degreeSequence() {
 		// XXX: Implement in part 1 of week 2
 		
-		ArrayList<Integer> list = new ArrayList<Integer>();
+		//counting sort: how many vertices have each degree
+		int[] degrees = new int[numVertices];
+		int maxDegree = 0;
 		for (int i=0;i<numVertices;i++){
-			list.add(getNeighbors(i).size() + getInNeighbors(i).size());
+			degrees[i] = getOutDegree(i) + getInDegree(i);
+			maxDegree = Math.max(maxDegree, degrees[i]);
+		}
+		int[] counts = new int[maxDegree+1];
+		for (int degree : degrees){
+			counts[degree]++;
+		}
+		ArrayList<Integer> list = new ArrayList<Integer>(numVertices);
+		for (int degree=maxDegree;degree>=0;degree--){
+			for (int i=0;i<counts[degree];i++){
+				list.add(degree);
+			}
 		}
-		Collections.sort(list);
-		Collections.reverse(list);
 		return list;
 	}
 	
@@ -163,9 +184,9 @@ public abstract class Graph {
 	 * @return The integer index of this vertex 
 	 */
 	public int getIndex(String s) {
-		for (Map.Entry<Integer,String> entry : vertexLabels.entrySet()) {
-			if (entry.getValue().equals(s))
-				return entry.getKey();
+		Integer index = labelIndices.get(s);
+		if (index != null) {
+			return index;
 		}
 		System.out.println("ERROR: No vertex with this label");
 		return -1;
@@ -173,6 +194,16 @@ public abstract class Graph {
 	
 	
 
+	/**
+	 * Report the number of edges into a vertex.  Subclasses that
+	 * can count them without listing them should override this.
+	 * @param v Index of vertex in question.
+	 * @return The number of edges that end at v.
+	 */
+	public int getInDegree(int v) {
+		return getInNeighbors(v).size();
+	}
+
 	/**
 	 * Get all in-neighbors of a given vertex.
 	 * @param v Index of vertex in question.
@@ -187,7 +218,7 @@ public abstract class Graph {
 	 * @return The String label of this vertex 
 	 */
 	public String getLabel(int v) {
-		if (vertexLabels.containsKey(v)) {
+		if (v >= 0 && v < vertexLabels.size()) {
 			return vertexLabels.get(v);
 		}
 		else return null;
@@ -201,6 +232,27 @@ public abstract class Graph {
 	 */
 	public abstract List<Integer> getNeighbors(int v);
 
+	/**
+	 * The (out-)neighbors of a vertex as a stream of ints, listed as
+	 * getNeighbors lists them.  Subclasses that can give them without 
+	 * building a list of Integers should override this.
+	 * @param v Index of vertex in question.
+	 * @return The end points of the edges from v.
+	 */
+	public IntStream neighbors(int v) {
+		return getNeighbors(v).stream().mapToInt(Integer::intValue);
+	}
+
+	/**
+	 * Report the number of edges out of a vertex.  Subclasses that
+	 * can count them without listing them should override this.
+	 * @param v Index of vertex in question.
+	 * @return The number of edges that start at v.
+	 */
+	public int getOutDegree(int v) {
+		return getNeighbors(v).size();
+	}
+
 	/**
 	 * Report size of edge set
 	 * @return The number of edges in the graph.
@@ -239,7 +291,7 @@ public abstract class Graph {
 	 */
 	public boolean hasVertex(String s)
 	{
-		return vertexLabels.containsValue(s);
+		return labelIndices.containsKey(s);
 	}
 	
 	/**
@@ -255,11 +307,13 @@ public abstract class Graph {
 	public abstract void implementAddVertex();
 
 	/**
-	 * Create a new map of vertex indices to string labels
+	 * Create a new map of vertex indices to string labels, and its
+	 * reverse, so labels can be looked up either way in constant time.
 	 * (Optional: only if using labeled vertices.)
 	 */
 	public void initializeLabels() {
-		vertexLabels = new HashMap<Integer,String>();
+		vertexLabels = new ArrayList<String>();
+		labelIndices = new HashMap<String,Integer>();
 	}
 	
 
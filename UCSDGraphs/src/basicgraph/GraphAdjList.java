@@ -1,31 +1,58 @@
 package basicgraph;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.stream.IntStream;
 
-/** A class that implements a directed graph. 
- * The graph may have self-loops, parallel edges. 
+/** A class that implements a directed graph.
+ * The graph may have self-loops, parallel edges.
  * Vertices are labeled by integers 0 .. n-1
  * and may also have String labels.
  * The edges of the graph are not labeled.
  * Representation of edges via adjacency lists.
- * 
+ *
+ * The lists are int arrays, one per vertex, that grow as edges are
+ * added, so no edge is a boxed Integer.  Once a graph is loaded,
+ * freeze() packs them into compressed sparse row form: all the lists
+ * end to end in one array, with an array of where each one starts.
+ *
+ * Reads do not change the graph, so any number of threads may read it
+ * at once, e.g. GraphStats; adding vertices or edges must not overlap
+ * with anything else.
+ *
  * @author UCSD MOOC development team and YOU
  *
  */
 public class GraphAdjList extends Graph {
 
+	private final int defaultNumVertices = 16;
+	private final int defaultListLength = 4;
+
+	//while adding: vertex -> end points of edges from it, in the order
+	//added, and how many of each array are in use
+	private int[][] adjLists;
+	private int[] adjSizes;
+	//the reverse of adjLists: vertex -> start points of edges into it,
+	//kept in increasing order
+	private int[][] inLists;
+	private int[] inSizes;
+
+	//when frozen: the lists of vertex v are adjTargets[adjOffsets[v] .. adjOffsets[v+1]-1]
+	//and inSources[inOffsets[v] .. inOffsets[v+1]-1], and the arrays above are null
+	private int[] adjOffsets;
+	private int[] adjTargets;
+	private int[] inOffsets;
+	private int[] inSources;
 
-	private Map<Integer,ArrayList<Integer>> adjListsMap;
-	
-	/** 
+	/**
 	 * Create a new empty Graph
 	 */
 	public GraphAdjList () {
-		adjListsMap = new HashMap<Integer,ArrayList<Integer>>();
+		adjLists = new int[defaultNumVertices][];
+		adjSizes = new int[defaultNumVertices];
+		inLists = new int[defaultNumVertices][];
+		inSizes = new int[defaultNumVertices];
 	}
 
 	/**
@@ -33,92 +60,243 @@ public class GraphAdjList extends Graph {
 	 * @return the String
 	 */
 	public String adjacencyString() {
-		String s = "Adjacency list";
-		s += " (size " + getNumVertices() + "+" + getNumEdges() + " integers):";
+		StringBuilder s = new StringBuilder("Adjacency list");
+		s.append(" (size " + getNumVertices() + "+" + getNumEdges() + " integers):");
 
-		for (int v : adjListsMap.keySet()) {
-			s += "\n\t"+v+": ";
-			for (int w : adjListsMap.get(v)) {
-				s += w+", ";
-			}
+		for (int v = 0; v < getNumVertices(); v++) {
+			s.append("\n\t"+v+": ");
+			neighbors(v).forEach(w -> s.append(w+", "));
 		}
-		return s;
+		return s.toString();
 	}
-	
-	/** 
-	 * Implement the abstract method for finding all 
+
+	/**
+	 * Implement the abstract method for finding all
 	 * vertices reachable by two hops from v.
-	 * 
+	 *
 	 * @param v the index of vertex.
-	 * @return List<Integer> a list of indices of vertices.  
-	 */		
+	 * @return List<Integer> a list of indices of vertices.
+	 */
 	 public List<Integer> getDistance2(int v) {
-		 // XXX: Implement this method in week 2
 		 List<Integer> twoHopNeighbors = new ArrayList<Integer>();
-		 List<Integer> oneHopNeighbors = getNeighbors(v);
-		 for(Integer i : oneHopNeighbors){
-			 twoHopNeighbors.addAll(getNeighbors(i));
-		 }			 
+		 neighbors(v).forEach(i -> neighbors(i).forEach(twoHopNeighbors::add));
 		 return twoHopNeighbors;
 	}
-	
-	/** 
-	 * Implement the abstract method for finding all 
+
+	/**
+	 * Implement the abstract method for finding all
 	 * in-neighbors of a vertex.
 	 * If there are multiple edges from another vertex
 	 * to this one, the neighbor
 	 * appears once in the list for each of these edges.
-	 * 
+	 * The in-lists are kept up to date as edges are added, so
+	 * this takes time in proportion to the in-degree of v.
+	 *
 	 * @param v the index of vertex.
-	 * @return List<Integer> a list of indices of vertices.  
-	 */	
+	 * @return List<Integer> a list of indices of vertices.
+	 */
 	public List<Integer> getInNeighbors(int v) {
-		List<Integer> inNeighbors = new ArrayList<Integer>();
-		for (int u : adjListsMap.keySet()) {
-			//iterate through all edges in u's adjacency list and 
-			//add u to the inNeighbor list of v whenever an edge
-			//with startpoint u has endpoint v.
-			for (int w : adjListsMap.get(u)) {
-				if (v == w) {
-					inNeighbors.add(u);
-				}
-			}
-		}
+		List<Integer> inNeighbors = new ArrayList<Integer>(getInDegree(v));
+		inNeighbors(v).forEach(inNeighbors::add);
 		return inNeighbors;
 	}
 
-	/** 
-	 * Implement the abstract method for finding all 
+	/**
+	 * The in-neighbors of a vertex, as getInNeighbors lists them,
+	 * without copying or boxing them.
+	 * @param v the index of vertex.
+	 * @return the start points of the edges into v, in increasing order.
+	 */
+	public IntStream inNeighbors(int v) {
+		if (adjLists == null) {
+			return Arrays.stream(inSources, inOffsets[v], inOffsets[v+1]);
+		}
+		return Arrays.stream(inLists[v], 0, inSizes[v]);
+	}
+
+	/**
+	 * Report the number of edges into a vertex, from its in-list.
+	 * @param v the index of vertex.
+	 * @return the in-degree of v.
+	 */
+	public int getInDegree(int v) {
+		if (adjLists == null) {
+			return inOffsets[v+1] - inOffsets[v];
+		}
+		return inSizes[v];
+	}
+
+	/**
+	 * Report the number of edges out of a vertex, from its adjacency list.
+	 * @param v the index of vertex.
+	 * @return the out-degree of v.
+	 */
+	public int getOutDegree(int v) {
+		if (adjLists == null) {
+			return adjOffsets[v+1] - adjOffsets[v];
+		}
+		return adjSizes[v];
+	}
+
+	/**
+	 * Implement the abstract method for finding all
 	 * out-neighbors of a vertex.
 	 * If there are multiple edges between the vertex
 	 * and one of its out-neighbors, this neighbor
 	 * appears once in the list for each of these edges.
-	 * 
+	 *
 	 * @param v the index of vertex.
-	 * @return List<Integer> a list of indices of vertices.  
-	 */	
+	 * @return List<Integer> a list of indices of vertices.
+	 */
 	public List<Integer> getNeighbors(int v) {
-		return new ArrayList<Integer>(adjListsMap.get(v));
+		List<Integer> neighbors = new ArrayList<Integer>(getOutDegree(v));
+		neighbors(v).forEach(neighbors::add);
+		return neighbors;
+	}
+
+	/**
+	 * The out-neighbors of a vertex, as getNeighbors lists them,
+	 * without copying or boxing them.
+	 * @param v the index of vertex.
+	 * @return the end points of the edges from v, in the order added.
+	 */
+	public IntStream neighbors(int v) {
+		if (adjLists == null) {
+			return Arrays.stream(adjTargets, adjOffsets[v], adjOffsets[v+1]);
+		}
+		return Arrays.stream(adjLists[v], 0, adjSizes[v]);
+	}
+
+	/**
+	 * Pack the adjacency lists into compressed sparse row form, with no
+	 * spare room, once the graph has been loaded.  Neighbors are listed
+	 * in the same order as before.  Adding a vertex or edge afterwards
+	 * unpacks them again.
+	 */
+	public void freeze() {
+		if (adjLists == null) return;
+		int n = getNumVertices();
+		adjOffsets = new int[n+1];
+		for (int v = 0; v < n; v++) {
+			adjOffsets[v+1] = adjOffsets[v] + adjSizes[v];
+		}
+		adjTargets = new int[adjOffsets[n]];
+		for (int v = 0; v < n; v++) {
+			System.arraycopy(adjLists[v], 0, adjTargets, adjOffsets[v], adjSizes[v]);
+		}
+
+		//the in-lists are the adjacency lists turned around: taking the
+		//start points in increasing order leaves each one sorted
+		inOffsets = new int[n+1];
+		for (int v = 0; v < n; v++) {
+			inOffsets[v+1] = inOffsets[v] + inSizes[v];
+		}
+		inSources = new int[inOffsets[n]];
+		int[] next = Arrays.copyOf(inOffsets, n);
+		for (int u = 0; u < n; u++) {
+			for (int e = adjOffsets[u]; e < adjOffsets[u+1]; e++) {
+				inSources[next[adjTargets[e]]++] = u;
+			}
+		}
+
+		adjLists = null;
+		adjSizes = null;
+		inLists = null;
+		inSizes = null;
+	}
+
+	/*
+	 *  Unpack frozen lists so they can grow again
+	 */
+	private void thaw() {
+		int n = getNumVertices();
+		int capacity = Math.max(defaultNumVertices, n);
+		adjLists = new int[capacity][];
+		adjSizes = new int[capacity];
+		inLists = new int[capacity][];
+		inSizes = new int[capacity];
+		for (int v = 0; v < n; v++) {
+			adjSizes[v] = adjOffsets[v+1] - adjOffsets[v];
+			adjLists[v] = Arrays.copyOfRange(adjTargets, adjOffsets[v],
+					adjOffsets[v] + Math.max(defaultListLength, adjSizes[v]));
+			inSizes[v] = inOffsets[v+1] - inOffsets[v];
+			inLists[v] = Arrays.copyOfRange(inSources, inOffsets[v],
+					inOffsets[v] + Math.max(defaultListLength, inSizes[v]));
+		}
+		adjOffsets = null;
+		adjTargets = null;
+		inOffsets = null;
+		inSources = null;
 	}
-	 
 
-	/** 
+	/**
 	 * Implement the abstract method for adding an edge.
 	 * @param v the index of the start point for the edge.
-	 * @param w the index of the end point for the edge.  
+	 * @param w the index of the end point for the edge.
 	 */
 	public void implementAddEdge(int v, int w) {
-		(adjListsMap.get(v)).add(w);
+		if (adjLists == null) {
+			thaw();
+		}
+		adjLists[v] = append(adjLists[v], adjSizes[v]++, w);
+		inLists[w] = insertInOrder(inLists[w], inSizes[w]++, v);
+	}
 
+	private static int[] append(int[] list, int size, int value) {
+		if (size == list.length) {
+			list = Arrays.copyOf(list, size * 2);
+		}
+		list[size] = value;
+		return list;
+	}
+
+	/*
+	 *  Add value to a list in increasing order, after any equal values.
+	 *  The usual case, value at least the last one, is an append; the
+	 *  in-lists are listed in increasing order, as scanning every
+	 *  vertex's adjacency list in turn always did.
+	 */
+	private static int[] insertInOrder(int[] list, int size, int value) {
+		if (size == 0 || list[size-1] <= value) {
+			return append(list, size, value);
+		}
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (list[mid] <= value) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		if (size == list.length) {
+			list = Arrays.copyOf(list, size * 2);
+		}
+		System.arraycopy(list, low, list, low + 1, size - low);
+		list[low] = value;
+		return list;
 	}
-	
-	/** 
-	 * Implement the abstract method for adding a vertex. 
+
+	/**
+	 * Implement the abstract method for adding a vertex.
+	 * If need to make room for more lists, double it
+	 * to amortize cost.
 	 */
 	public void implementAddVertex() {
+		if (adjLists == null) {
+			thaw();
+		}
 		int v = getNumVertices();
-		ArrayList<Integer> neighbors = new ArrayList<Integer>();
-		adjListsMap.put(v,  neighbors);
+		if (v >= adjLists.length) {
+			adjLists = Arrays.copyOf(adjLists, v*2);
+			adjSizes = Arrays.copyOf(adjSizes, v*2);
+			inLists = Arrays.copyOf(inLists, v*2);
+			inSizes = Arrays.copyOf(inSizes, v*2);
+		}
+		adjLists[v] = new int[defaultListLength];
+		inLists[v] = new int[defaultListLength];
 	}
 
 
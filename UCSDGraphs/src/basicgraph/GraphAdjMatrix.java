@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 import util.GraphLoader;
@@ -68,43 +69,141 @@ public class GraphAdjMatrix extends Graph {
 		}
 		return s;
 	}
-	/*
-	public static void main (String[] args) {
-		int[][] a = {{1,0,1},{0,1,0},{1,1,0}};
-		System.out.println("****");
-		System.out.println("Adj Matrix:");
-		printMatrix(a);
-		int[][] ans = mulMat(a,a);
-		
-		System.out.println("****");
-		System.out.println("Ans Matrix:");
-		printMatrix(ans);
+	
+	/**
+	 * Time the ways of finding vertices two hops away on random graphs
+	 * with about four edges per vertex: squaring the whole int matrix 
+	 * with mulMat, getDistance2 for every vertex, and the bit-packed 
+	 * parallel product.  Checks that all three find the same pairs.
+	 * @param args Not used
+	 */
+	public static void main(String[] args) {
+		Random random = new Random(42);
+		System.out.printf("%6s %12s %16s %12s%n", "n", "mulMat ms", "all rows ms", "bits ms");
+		for (int n : new int[] {128, 256, 512, 1024}) {
+			GraphAdjMatrix graph = new GraphAdjMatrix();
+			for (int i = 0; i < n; i++) {
+				graph.addVertex();
+			}
+			for (int e = 0; e < 4 * n; e++) {
+				graph.addEdge(random.nextInt(n), random.nextInt(n));
+			}
+			
+			long matBest = Long.MAX_VALUE, rowBest = Long.MAX_VALUE, bitBest = Long.MAX_VALUE;
+			int[][] square = null;
+			List<List<Integer>> rows = null;
+			BitMatrix bits = null;
+			for (int round = 0; round < 5; round++) {
+				long t0 = System.nanoTime();
+				square = mulMat(graph.adjMatrix, graph.adjMatrix);
+				long t1 = System.nanoTime();
+				rows = new ArrayList<List<Integer>>();
+				for (int v = 0; v < n; v++) {
+					rows.add(graph.getDistance2(v));
+				}
+				long t2 = System.nanoTime();
+				bits = graph.getDistanceKMatrix(2);
+				long t3 = System.nanoTime();
+				matBest = Math.min(matBest, t1 - t0);
+				rowBest = Math.min(rowBest, t2 - t1);
+				bitBest = Math.min(bitBest, t3 - t2);
+			}
+			
+			boolean same = true;
+			for (int v = 0; v < n; v++) {
+				List<Integer> expected = new ArrayList<Integer>();
+				for (int w = 0; w < n; w++) {
+					for (int j = 0; j < square[v][w]; j++) {
+						expected.add(w);
+					}
+					same &= (square[v][w] != 0) == bits.get(v, w);
+				}
+				same &= expected.equals(rows.get(v));
+			}
+			System.out.printf("%6d %12.2f %16.2f %12.2f%s%n", n, matBest / 1e6, rowBest / 1e6, 
+					bitBest / 1e6, same ? "" : "  (RESULTS DIFFER)");
+		}
 	}
-	*/
 	/** 
 	 * Implement the abstract method for finding all 
 	 * vertices reachable by two hops from v.
 	 * Use matrix multiplication to record length 2 paths.
+	 * Only row v of the square of the matrix is needed, so it is
+	 * computed as row v of the matrix times the matrix.
 	 * 
 	 * @param v the index of vertex.
 	 * @return List<Integer> a list of indices of vertices.  
 	 */	
 	public List<Integer> getDistance2(int v) {
-		// XXX Implement this method in week 2
 		int n = getNumVertices();
-		int[][] twoHopMatrix = mulMat(adjMatrix, adjMatrix);
+		int[] twoHopRow = new int[n];
+		int[] row = adjMatrix[v];
+		for(int k=0;k<n;k++){
+			int edges = row[k];
+			if(edges==0) continue;
+			int[] next = adjMatrix[k];
+			for(int i=0;i<n;i++){
+				twoHopRow[i] += edges * next[i];
+			}
+		}
 		ArrayList<Integer> twoHopList = new ArrayList<Integer>();
 		for(int i=0;i<n;i++){
-			int val = twoHopMatrix[v][i];
-			if(val!=0){
-				for(int j=0;j<val;j++){
-					twoHopList.add(i);
-				}
+			int val = twoHopRow[i];
+			for(int j=0;j<val;j++){
+				twoHopList.add(i);
 			}
 		}
 		return twoHopList;
 	}
 	
+	/**
+	 * Find the vertices at the end of a walk of exactly k edges from v.
+	 * Each is listed once, however many walks reach it.  Computed as k 
+	 * products of a row vector and the matrix.
+	 * 
+	 * @param v the index of vertex.
+	 * @param k the number of edges, at least 0.
+	 * @return List<Integer> the indices of the vertices, in increasing order.
+	 */
+	public List<Integer> getDistanceK(int v, int k) {
+		int n = getNumVertices();
+		boolean[] reached = new boolean[n];
+		reached[v] = true;
+		for (int step = 0; step < k; step++) {
+			boolean[] next = new boolean[n];
+			for (int u = 0; u < n; u++) {
+				if (!reached[u]) continue;
+				int[] row = adjMatrix[u];
+				for (int i = 0; i < n; i++) {
+					if (row[i] != 0) {
+						next[i] = true;
+					}
+				}
+			}
+			reached = next;
+		}
+		List<Integer> vertices = new ArrayList<Integer>();
+		for (int i = 0; i < n; i++) {
+			if (reached[i]) {
+				vertices.add(i);
+			}
+		}
+		return vertices;
+	}
+	
+	/**
+	 * For every pair of vertices, whether there is a walk of exactly k
+	 * edges between them: the k-th boolean power of the adjacency matrix,
+	 * packed into bits and multiplied in parallel.
+	 * 
+	 * @param k the number of edges, at least 1.
+	 * @return the matrix with entry (v, w) set when w is at the end of 
+	 *   a walk of k edges from v.
+	 */
+	public BitMatrix getDistanceKMatrix(int k) {
+		return BitMatrix.fromCounts(adjMatrix, getNumVertices()).power(k);
+	}
+	
 	/** 
 	 * Implement the abstract method for finding all 
 	 * in-neighbors of a vertex.
@@ -0,0 +1,247 @@
+package basicgraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/** A class that implements a directed graph.
+ * The graph may have self-loops, parallel edges.
+ * Vertices are labeled by integers 0 .. n-1
+ * and may also have String labels.
+ * The edges of the graph are not labeled.
+ * Representation of edges via an adjacency matrix of bits:
+ * row v is packed into longs, with bit w % 64 of word w / 64 set
+ * when there is an edge from v to w.  That is 1/32 of the memory
+ * of the int matrix in GraphAdjMatrix, which makes matrices of
+ * 100,000 vertices (1.25GB) possible.
+ *
+ * The bits can only record whether there is an edge, so the edges
+ * beyond the first between the same two vertices are counted in a
+ * separate map, which is empty for a graph without parallel edges.
+ *
+ * @author UCSD MOOC development team and YOU
+ *
+ */
+public class GraphBitMatrix extends Graph {
+
+	private final int defaultNumVertices = 64;
+
+	private long[][] rows;		//rows[v] has a bit for each vertex there is room for
+	private int capacity;		//vertices there is room for, a multiple of 64
+	//(v << 32 | w) -> number of edges from v to w beyond the first
+	private Map<Long,Integer> extraEdges;
+
+	/** Create a new empty Graph */
+	public GraphBitMatrix () {
+		capacity = defaultNumVertices;
+		rows = new long[capacity][];
+		extraEdges = new HashMap<Long,Integer>();
+	}
+
+	/**
+	 * Generate string representation of adjacency matrix
+	 * @return the String
+	 */
+	public String adjacencyString() {
+		int dim = getNumVertices();
+		StringBuilder s = new StringBuilder("Adjacency bit matrix");
+		s.append(" (size " + dim + "x" + dim + " = " + dim * dim + " bits):");
+		for (int i = 0; i < dim; i ++) {
+			s.append("\n\t" + i + ": ");
+			for (int j = 0; j < dim; j++) {
+				s.append(edgeCount(i, j) + ", ");
+			}
+		}
+		return s.toString();
+	}
+
+	/**
+	 * The number of edges from one vertex to another
+	 * @param v the index of the start vertex.
+	 * @param w the index of the end vertex.
+	 * @return the number of edges, 0 if there are none.
+	 */
+	public int edgeCount(int v, int w) {
+		if ((rows[v][w >>> 6] & (1L << w)) == 0) {
+			return 0;
+		}
+		if (extraEdges.isEmpty()) {
+			return 1;
+		}
+		Integer extra = extraEdges.get(key(v, w));
+		return extra == null ? 1 : 1 + extra;
+	}
+
+	/**
+	 * Implement the abstract method for finding all
+	 * vertices reachable by two hops from v.
+	 * The set bits of row v are found a word at a time, and the
+	 * rows of those vertices added up.  There is one entry for
+	 * each path of two edges, as for GraphAdjMatrix.
+	 *
+	 * @param v the index of vertex.
+	 * @return List<Integer> a list of indices of vertices.
+	 */
+	public List<Integer> getDistance2(int v) {
+		int n = getNumVertices();
+		int[] paths = new int[n];
+		long[] row = rows[v];
+		for (int word = 0; word < row.length; word++) {
+			for (long bits = row[word]; bits != 0; bits &= bits - 1) {
+				int k = (word << 6) + Long.numberOfTrailingZeros(bits);
+				int edges = edgeCount(v, k);
+				long[] next = rows[k];
+				for (int nextWord = 0; nextWord < next.length; nextWord++) {
+					for (long nextBits = next[nextWord]; nextBits != 0; nextBits &= nextBits - 1) {
+						int w = (nextWord << 6) + Long.numberOfTrailingZeros(nextBits);
+						paths[w] += edges * edgeCount(k, w);
+					}
+				}
+			}
+		}
+		List<Integer> twoHopList = new ArrayList<Integer>();
+		for (int w = 0; w < n; w++) {
+			for (int j = 0; j < paths[w]; j++) {
+				twoHopList.add(w);
+			}
+		}
+		return twoHopList;
+	}
+
+	/**
+	 * Implement the abstract method for finding all
+	 * in-neighbors of a vertex.
+	 * If there are multiple edges from another vertex
+	 * to this one, the neighbor
+	 * appears once in the list for each of these edges.
+	 * Reads one word of each row.
+	 *
+	 * @param v the index of vertex.
+	 * @return List<Integer> a list of indices of vertices.
+	 */
+	public List<Integer> getInNeighbors(int v) {
+		List<Integer> inNeighbors = new ArrayList<Integer>();
+		int word = v >>> 6;
+		long bit = 1L << v;
+		for (int i = 0; i < getNumVertices(); i ++) {
+			if ((rows[i][word] & bit) != 0) {
+				addTimes(inNeighbors, i, edgeCount(i, v));
+			}
+		}
+		return inNeighbors;
+	}
+
+	/**
+	 * Implement the abstract method for finding all
+	 * out-neighbors of a vertex.
+	 * If there are multiple edges between the vertex
+	 * and one of its out-neighbors, this neighbor
+	 * appears once in the list for each of these edges.
+	 * Skips a word of the row at a time where there are no edges.
+	 *
+	 * @param v the index of vertex.
+	 * @return List<Integer> a list of indices of vertices.
+	 */
+	public List<Integer> getNeighbors(int v) {
+		List<Integer> neighbors = new ArrayList<Integer>();
+		long[] row = rows[v];
+		for (int word = 0; word < row.length; word++) {
+			for (long bits = row[word]; bits != 0; bits &= bits - 1) {
+				int w = (word << 6) + Long.numberOfTrailingZeros(bits);
+				addTimes(neighbors, w, edgeCount(v, w));
+			}
+		}
+		return neighbors;
+	}
+
+	/**
+	 * The out-neighbors of a vertex, as getNeighbors lists them,
+	 * read straight from the bits without a list of Integers.
+	 * @param v the index of vertex.
+	 * @return the end points of the edges from v, in increasing order.
+	 */
+	public IntStream neighbors(int v) {
+		IntStream.Builder neighbors = IntStream.builder();
+		long[] row = rows[v];
+		for (int word = 0; word < row.length; word++) {
+			for (long bits = row[word]; bits != 0; bits &= bits - 1) {
+				int w = (word << 6) + Long.numberOfTrailingZeros(bits);
+				for (int j = edgeCount(v, w); j > 0; j--) {
+					neighbors.add(w);
+				}
+			}
+		}
+		return neighbors.build();
+	}
+
+	private static void addTimes(List<Integer> list, int vertex, int times) {
+		for (int j = 0; j < times; j++) {
+			list.add(vertex);
+		}
+	}
+
+	/**
+	 * The matrix with entry (v, w) set when there is an edge from v to w,
+	 * e.g. to find walks of k edges with BitMatrix.power.
+	 * @return a copy of the bits of this graph.
+	 */
+	public BitMatrix toBitMatrix() {
+		int n = getNumVertices();
+		BitMatrix matrix = new BitMatrix(n);
+		for (int v = 0; v < n; v++) {
+			long[] row = rows[v];
+			for (int word = 0; word < row.length; word++) {
+				for (long bits = row[word]; bits != 0; bits &= bits - 1) {
+					matrix.set(v, (word << 6) + Long.numberOfTrailingZeros(bits));
+				}
+			}
+		}
+		return matrix;
+	}
+
+	/**
+	 * Implement the abstract method for adding an edge.
+	 * Allows for multiple edges between two points: the first sets
+	 * the bit at row v, column w and the rest are counted in the
+	 * map of extra edges.
+	 * @param v the index of the start point for the edge.
+	 * @param w the index of the end point for the edge.
+	 */
+	public void implementAddEdge(int v, int w) {
+		long[] row = rows[v];
+		int word = w >>> 6;
+		long bit = 1L << w;
+		if ((row[word] & bit) == 0) {
+			row[word] |= bit;
+		}
+		else {
+			extraEdges.merge(key(v, w), 1, Integer::sum);
+		}
+	}
+
+	/**
+	 * Implement the abstract method for adding a vertex.
+	 * If need to increase dimensions of matrix, double them
+	 * to amortize cost.  Each row is only as long as the
+	 * columns there is room for.
+	 */
+	public void implementAddVertex() {
+		int v = getNumVertices();
+		if (v >= capacity) {
+			capacity *= 2;
+			rows = Arrays.copyOf(rows, capacity);
+			for (int i = 0; i < v; i ++) {
+				rows[i] = Arrays.copyOf(rows[i], capacity >>> 6);
+			}
+		}
+		rows[v] = new long[capacity >>> 6];
+	}
+
+	private static Long key(int v, int w) {
+		return ((long)v << 32) | w;
+	}
+
+}
@@ -0,0 +1,234 @@
+package basicgraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/** Statistics of a directed graph: its degree distribution, maximum and
+ * mean degree, reciprocity, self-loops, parallel edges and (weakly)
+ * connected components.  Works for any subclass of Graph, through
+ * Graph.neighbors.
+ *
+ * They are all worked out when the object is created.  The vertices are
+ * gone through in parallel, once, to find the degrees and each vertex's
+ * sorted, distinct out-neighbors, from which the self-loops and parallel
+ * edges are counted.  The reciprocity is found from the sorted lists in
+ * a second parallel pass, and the components by union-find.  The degree
+ * sequence is read off the degree histogram, a counting sort.
+ *
+ * The graph must not change while its statistics are being computed.
+ *
+ * @author UCSD MOOC development team and YOU
+ *
+ */
+public class GraphStats {
+	private final int numVertices;
+	private final long numEdges;
+	private final int[] degreeCounts;	//degree -> number of vertices with it
+	private final long selfLoops;
+	private final long parallelEdges;
+	private final long linkedPairs;		//ordered pairs of different vertices with an edge
+	private final long reciprocatedPairs;	//those with an edge back as well
+	private final int numComponents;
+	private final int largestComponent;
+
+	/**
+	 * Compute the statistics of a graph
+	 * @param graph The graph
+	 */
+	public GraphStats(Graph graph) {
+		int n = graph.getNumVertices();
+		numVertices = n;
+		int[] outDegree = new int[n];
+		AtomicIntegerArray inDegree = new AtomicIntegerArray(n);
+		int[][] outNeighbors = new int[n][];	//sorted and without repeats
+		LongAdder loops = new LongAdder();
+		LongAdder repeats = new LongAdder();
+
+		IntStream.range(0, n).parallel().forEach(v -> {
+			int[] out = graph.neighbors(v).toArray();
+			outDegree[v] = out.length;
+			Arrays.sort(out);
+			int distinct = 0;
+			for (int w : out) {
+				inDegree.incrementAndGet(w);
+				if (w == v) {
+					loops.increment();
+				}
+				if (distinct > 0 && out[distinct-1] == w) {
+					repeats.increment();
+				}
+				else {
+					out[distinct++] = w;
+				}
+			}
+			outNeighbors[v] = (distinct == out.length) ? out : Arrays.copyOf(out, distinct);
+		});
+		selfLoops = loops.sum();
+		parallelEdges = repeats.sum();
+
+		// Pairs v -> w with an edge w -> v as well
+		reciprocatedPairs = IntStream.range(0, n).parallel().mapToLong(v -> {
+			long back = 0;
+			for (int w : outNeighbors[v]) {
+				if (w != v && Arrays.binarySearch(outNeighbors[w], v) >= 0) {
+					back++;
+				}
+			}
+			return back;
+		}).sum();
+
+		long edges = 0;
+		long pairs = 0;
+		int maxDegree = 0;
+		int[] degree = new int[n];
+		for (int v = 0; v < n; v++) {
+			edges += outDegree[v];
+			pairs += outNeighbors[v].length;
+			if (Arrays.binarySearch(outNeighbors[v], v) >= 0) {
+				pairs--;
+			}
+			degree[v] = outDegree[v] + inDegree.get(v);
+			maxDegree = Math.max(maxDegree, degree[v]);
+		}
+		numEdges = edges;
+		linkedPairs = pairs;
+		degreeCounts = new int[maxDegree + 1];
+		for (int v = 0; v < n; v++) {
+			degreeCounts[degree[v]]++;
+		}
+
+		// Weakly connected components: union-find over the edges
+		int[] parent = new int[n];
+		int[] size = new int[n];
+		for (int v = 0; v < n; v++) {
+			parent[v] = v;
+			size[v] = 1;
+		}
+		int components = n;
+		for (int v = 0; v < n; v++) {
+			for (int w : outNeighbors[v]) {
+				int a = find(parent, v);
+				int b = find(parent, w);
+				if (a == b) continue;
+				if (size[a] < size[b]) {
+					int t = a; a = b; b = t;
+				}
+				parent[b] = a;
+				size[a] += size[b];
+				components--;
+			}
+		}
+		int largest = 0;
+		for (int v = 0; v < n; v++) {
+			if (parent[v] == v) {
+				largest = Math.max(largest, size[v]);
+			}
+		}
+		numComponents = components;
+		largestComponent = largest;
+	}
+
+	/*
+	 *  The root of v's set, halving the path to it on the way
+	 */
+	private static int find(int[] parent, int v) {
+		while (parent[v] != v) {
+			parent[v] = parent[parent[v]];
+			v = parent[v];
+		}
+		return v;
+	}
+
+	/** @return The number of vertices */
+	public int getNumVertices() {
+		return numVertices;
+	}
+
+	/** @return The number of edges */
+	public long getNumEdges() {
+		return numEdges;
+	}
+
+	/**
+	 * The degree histogram: entry d is the number of vertices with
+	 * degree d, counting the edges both into and out of them.
+	 * @return A copy of the histogram, as long as the maximum degree plus one
+	 */
+	public int[] getDegreeCounts() {
+		return degreeCounts.clone();
+	}
+
+	/**
+	 * The degrees (in plus out) of the vertices from largest to smallest,
+	 * as Graph.degreeSequence gives them
+	 * @return The degree sequence
+	 */
+	public List<Integer> getDegreeSequence() {
+		List<Integer> sequence = new ArrayList<Integer>(numVertices);
+		for (int d = degreeCounts.length - 1; d >= 0; d--) {
+			for (int i = 0; i < degreeCounts[d]; i++) {
+				sequence.add(d);
+			}
+		}
+		return sequence;
+	}
+
+	/** @return The largest degree (in plus out) of any vertex, 0 if there are none */
+	public int getMaxDegree() {
+		return degreeCounts.length - 1;
+	}
+
+	/** @return The mean degree (in plus out), 0 if there are no vertices */
+	public double getMeanDegree() {
+		return numVertices == 0 ? 0 : 2.0 * numEdges / numVertices;
+	}
+
+	/**
+	 * The fraction of linked pairs of vertices that are linked both ways:
+	 * of the ordered pairs (v, w) of different vertices with an edge from
+	 * v to w, the fraction that also have an edge from w to v.
+	 * @return The reciprocity, from 0 to 1; 0 if there are no such pairs
+	 */
+	public double getReciprocity() {
+		return linkedPairs == 0 ? 0 : (double)reciprocatedPairs / linkedPairs;
+	}
+
+	/** @return The number of edges from a vertex to itself */
+	public long getNumSelfLoops() {
+		return selfLoops;
+	}
+
+	/** @return The number of edges beyond the first from one vertex to another */
+	public long getNumParallelEdges() {
+		return parallelEdges;
+	}
+
+	/**
+	 * @return The number of weakly connected components, those the graph
+	 * falls into when the direction of edges is ignored.  A vertex with no
+	 * edges is a component of its own.
+	 */
+	public int getNumComponents() {
+		return numComponents;
+	}
+
+	/** @return The number of vertices in the largest weakly connected component */
+	public int getLargestComponentSize() {
+		return largestComponent;
+	}
+
+	/** Return a String representation of the statistics
+	 * @return A summary of the statistics
+	 */
+	public String toString() {
+		return String.format("%d vertices, %d edges; degree max %d, mean %.2f; "
+				+ "reciprocity %.3f; %d self-loops, %d parallel edges; "
+				+ "%d components, largest %d vertices",
+				numVertices, numEdges, getMaxDegree(), getMeanDegree(), getReciprocity(),
+				selfLoops, parallelEdges, numComponents, largestComponent);
+	}
+}
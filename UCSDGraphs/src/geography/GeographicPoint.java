@@ -22,8 +22,17 @@ public class GeographicPoint extends Double {
                 other.getX(), other.getY());     
 	}
 	
-    
-    private double getDist(double lat1, double lon1, double lat2, double lon2)
+    /**
+     * Calculates the geographic distance in km between two lat, lon pairs
+     * without needing GeographicPoint objects for them.  Uses exactly the
+     * same formula as distance(GeographicPoint).
+     * @param lat1 Latitude of the first point
+     * @param lon1 Longitude of the first point
+     * @param lat2 Latitude of the second point
+     * @param lon2 Longitude of the second point
+     * @return The distance between the two points
+     */
+    public static double getDist(double lat1, double lon1, double lat2, double lon2)
     {
     	int R = 6373; // radius of the earth in kilometres
     	double lat1rad = Math.toRadians(lat1);
@@ -0,0 +1,242 @@
+package geography;
+
+import java.util.Arrays;
+
+/**
+ * Interns locations as dense int ids.  Latitude and longitude are rounded
+ * to fixed point, in units of 1e-7 degrees (about a centimetre), and the
+ * two ints are packed into one long that keys an open addressing hash
+ * table.  No objects are allocated per location.
+ *
+ * Ids are handed out from 0 in the order the locations are first added.
+ * Two locations that round to the same fixed point coordinates are the
+ * same location.  The .map data has at most 7 decimal places, so this
+ * never merges distinct points read from a map file.
+ *
+ * Not thread safe for changes; lookups may run concurrently once all the
+ * locations have been added.
+ *
+ */
+public class PointIndex {
+	/** Fixed point units per degree */
+	public static final double SCALE = 1e7;
+
+	// No location packs to this: its latitude would be -214.7 degrees
+	private static final long EMPTY = Long.MIN_VALUE;
+
+	private long[] keys;
+	private int[] ids;
+	private int size;
+
+	/**
+	 * Create an empty index
+	 */
+	public PointIndex()
+	{
+		this(16);
+	}
+
+	/**
+	 * Create an empty index with room for expected locations before it
+	 * has to grow
+	 * @param expected The number of locations expected
+	 */
+	public PointIndex(int expected)
+	{
+		int capacity = 16;
+		while (capacity < expected * 2) {
+			capacity *= 2;
+		}
+		keys = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		ids = new int[capacity];
+	}
+
+	/**
+	 * Pack a location into its fixed point key
+	 * @param latitude Latitude in degrees
+	 * @param longitude Longitude in degrees
+	 * @return The latitude in the high 32 bits and longitude in the low 32
+	 *   bits, each in units of 1e-7 degrees
+	 * @throws IllegalArgumentException If a coordinate is not a number
+	 *   or is too large to fit (more than about 214 degrees)
+	 */
+	public static long quantize(double latitude, double longitude)
+	{
+		return ((long)toFixed(latitude) << 32) | (toFixed(longitude) & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * @param key A key from quantize
+	 * @return The latitude of key, in degrees
+	 */
+	public static double getLatitude(long key)
+	{
+		return (int)(key >> 32) / SCALE;
+	}
+
+	/**
+	 * @param key A key from quantize
+	 * @return The longitude of key, in degrees
+	 */
+	public static double getLongitude(long key)
+	{
+		return (int)key / SCALE;
+	}
+
+	private static int toFixed(double degrees)
+	{
+		double fixed = Math.rint(degrees * SCALE);
+		if (!(fixed > Integer.MIN_VALUE && fixed <= Integer.MAX_VALUE)) {
+			throw new IllegalArgumentException("Coordinate out of range: " + degrees);
+		}
+		return (int)fixed;
+	}
+
+	/**
+	 * @return The number of locations in the index
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Return the id of a location, adding it if it is new
+	 * @param latitude Latitude in degrees
+	 * @param longitude Longitude in degrees
+	 * @return The id of the location, size()-1 if it was added
+	 */
+	public int getOrAdd(double latitude, double longitude)
+	{
+		long key = quantize(latitude, longitude);
+		int slot = slotOf(key);
+		if (keys[slot] == key) {
+			return ids[slot];
+		}
+		keys[slot] = key;
+		ids[slot] = size;
+		size++;
+		if (size * 2 > keys.length) {
+			grow();
+		}
+		return size - 1;
+	}
+
+	/**
+	 * Return the id of a location, adding it if it is new
+	 * @param p The location
+	 * @return The id of the location, size()-1 if it was added
+	 */
+	public int getOrAdd(GeographicPoint p)
+	{
+		return getOrAdd(p.getX(), p.getY());
+	}
+
+	/**
+	 * @param latitude Latitude in degrees
+	 * @param longitude Longitude in degrees
+	 * @return The id of the location, or -1 if it is not in the index
+	 */
+	public int get(double latitude, double longitude)
+	{
+		if (Double.isNaN(latitude) || Double.isNaN(longitude)) return -1;
+		if (Math.abs(latitude) * SCALE > Integer.MAX_VALUE
+				|| Math.abs(longitude) * SCALE > Integer.MAX_VALUE) return -1;
+		long key = quantize(latitude, longitude);
+		int slot = slotOf(key);
+		return keys[slot] == key ? ids[slot] : -1;
+	}
+
+	/**
+	 * @param p The location, may be null
+	 * @return The id of the location, or -1 if it is null or not in the index
+	 */
+	public int get(GeographicPoint p)
+	{
+		return p == null ? -1 : get(p.getX(), p.getY());
+	}
+
+	/**
+	 * Set the id of a location, adding it if it is new.  Ids are only
+	 * handed out densely if the caller keeps them so, e.g. by giving the
+	 * last id to another location after a remove.
+	 * @param p The location
+	 * @param id Its id
+	 */
+	public void put(GeographicPoint p, int id)
+	{
+		long key = quantize(p.getX(), p.getY());
+		int slot = slotOf(key);
+		if (keys[slot] != key) {
+			keys[slot] = key;
+			size++;
+		}
+		ids[slot] = id;
+		if (size * 2 > keys.length) {
+			grow();
+		}
+	}
+
+	/**
+	 * Remove a location
+	 * @param p The location, may be null
+	 * @return The id it had, or -1 if it was not in the index
+	 */
+	public int remove(GeographicPoint p)
+	{
+		if (get(p) < 0) return -1;
+		int mask = keys.length - 1;
+		int hole = slotOf(quantize(p.getX(), p.getY()));
+		int id = ids[hole];
+		// Shift back the entries after the hole that probed past it, so
+		// every key stays reachable from its home slot
+		for (int next = (hole + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+			int home = mix(keys[next]) & mask;
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				keys[hole] = keys[next];
+				ids[hole] = ids[next];
+				hole = next;
+			}
+		}
+		keys[hole] = EMPTY;
+		size--;
+		return id;
+	}
+
+	/*
+	 *  The slot holding key, or the empty slot where it would go
+	 */
+	private int slotOf(long key)
+	{
+		int mask = keys.length - 1;
+		int slot = mix(key) & mask;
+		while (keys[slot] != EMPTY && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	// Spread the bits of both coordinates over the low bits
+	private static int mix(long key)
+	{
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32));
+	}
+
+	private void grow()
+	{
+		long[] oldKeys = keys;
+		int[] oldIds = ids;
+		keys = new long[oldKeys.length * 2];
+		Arrays.fill(keys, EMPTY);
+		ids = new int[oldKeys.length * 2];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				int slot = slotOf(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				ids[slot] = oldIds[i];
+			}
+		}
+	}
+}
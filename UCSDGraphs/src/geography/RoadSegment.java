@@ -61,6 +61,17 @@ public class RoadSegment {
 	// get the length of the road segment
 	public double getLength() { return this.length; }
 	
+	// get the end points, in the direction the segment was traced
+	public GeographicPoint getPoint1() { return this.point1; }
+	public GeographicPoint getPoint2() { return this.point2; }
+	
+	// get the points between the end points, from point1 to point2
+	public List<GeographicPoint> getGeometryPoints() { return Collections.unmodifiableList(this.geometryPoints); }
+	
+	// get the name and type of the road
+	public String getRoadName() { return this.roadName; }
+	public String getRoadType() { return this.roadType; }
+	
 	// given one end, return the other.
 	public geography.GeographicPoint getOtherPoint(geography.GeographicPoint point) {
 		if(point.equals(point1)) {
@@ -1,6 +1,7 @@
 package mapmaker;
 
 import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
@@ -36,20 +37,27 @@ public class DataFetcher {
         return q;
     }
 
+    /**
+     * Send the query to the Overpass API
+     * @return The response, OSM JSON, to be read and closed by the caller
+     * @throws IOException If the request fails
+     */
+    public InputStream openStream() throws IOException {
+        URL url = new URL("http://overpass-api.de/api/interpreter");
+        HttpURLConnection conn = (HttpURLConnection)url.openConnection();
+        conn.setDoOutput(true);
+        conn.setRequestMethod("POST");
+        conn.setRequestProperty("Accept-Charset", "utf-8;q=0.7,*;q=0.7");
+
+        DataOutputStream wr = new DataOutputStream(conn.getOutputStream());
+        wr.writeBytes(this.query);
+        wr.close();
+
+        return conn.getInputStream();
+    }
+
     public JsonObject getData() {
-        HttpURLConnection conn = null;
-        try {
-            URL url = new URL("http://overpass-api.de/api/interpreter");
-            conn = (HttpURLConnection)url.openConnection();
-            conn.setDoOutput(true);
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Accept-Charset", "utf-8;q=0.7,*;q=0.7");
-            
-            DataOutputStream wr = new DataOutputStream(conn.getOutputStream());
-            wr.writeBytes(this.query);
-            wr.close();
-
-            InputStream is = conn.getInputStream();
+        try (InputStream is = openStream()) {
             JsonReader rdr = Json.createReader(is);
         
             return rdr.readObject();
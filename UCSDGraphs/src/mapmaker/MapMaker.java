@@ -1,31 +1,12 @@
 package mapmaker;
 
-import java.io.PrintWriter;
-import java.util.HashMap;
-import java.util.List;
-import javax.json.*;
-
-class Location {
-    private double lat;
-    private double lon;
-
-    public Location(double lat, double lon) {
-        this.lat = lat;
-        this.lon = lon;
-    }
-
-    /**
-     * @param bounds [south, west, north, east]
-     */
-    public boolean outsideBounds(float[] bounds) {
-        return (lat < bounds[0] || lat > bounds[2] || lon < bounds[1] || lon > bounds[3]);
-    }
-
-    public String toString() {
-        return "" + lat + " " + lon + " ";
-    }
-        
-}
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 
 public class MapMaker {
     public static void main(String[] args) {
@@ -50,53 +31,43 @@ public class MapMaker {
     }
     float[] bounds;
 
-    HashMap<Integer, Location> nodes = new HashMap<Integer, Location>();
-
     public MapMaker(float[] bounds) {
         this.bounds = bounds;
     }
 
+    /**
+     * Fetch the roads inside the bounds and write them to a .map file.
+     * The response is converted as it arrives, see OsmJsonConverter.
+     * @param filename The .map file to write
+     * @return Whether the file was written
+     */
     public boolean parseData(String filename) {
         DataFetcher fetcher = new DataFetcher(bounds);
-        JsonObject data = fetcher.getData();
-
-        JsonArray elements = data.getJsonArray("elements");
-
-        for (JsonObject elem : elements.getValuesAs(JsonObject.class)) {
-            if (elem.getString("type").equals("node")) {
-                nodes.put(elem.getInt("id"), new Location(elem.getJsonNumber("lat").doubleValue(), elem.getJsonNumber("lon").doubleValue()));
-            }
-        }
-
-        PrintWriter outfile;
-        try {
-            outfile = new PrintWriter(filename);
+        try (InputStream in = fetcher.openStream();
+             Writer out = new BufferedWriter(new OutputStreamWriter(
+                     new FileOutputStream(filename), StandardCharsets.UTF_8))) {
+            new OsmJsonConverter(bounds).convert(in, out);
         } catch (Exception e) {
             e.printStackTrace();
             return false;
         }
+        return true;
+    }
 
-        for (JsonObject elem : elements.getValuesAs(JsonObject.class)) {
-            if (elem.getString("type").equals("way")) {
-                String street = elem.getJsonObject("tags").getString("name", "");
-                String type = elem.getJsonObject("tags").getString("highway", "");
-                String oneway = elem.getJsonObject("tags").getString("oneway", "no");
-                List<JsonNumber> nodelist = elem.getJsonArray("nodes").getValuesAs(JsonNumber.class);
-                for (int i = 0; i < nodelist.size() - 1; i++) {
-                    Location start = nodes.get(nodelist.get(i).intValue());
-                    Location end = nodes.get(nodelist.get(i + 1).intValue());
-                    if (start.outsideBounds(bounds) || end.outsideBounds(bounds)) {
-                        continue;
-                    }
-
-                    outfile.println("" + start + end + "\"" + street + "\" " + type);
-                    if (oneway.equals("no")) {
-                        outfile.println("" + end + start + "\"" + street + "\" " + type);
-                    }
-                }
-            }
+    /**
+     * Write the roads inside the bounds from a saved Overpass response,
+     * without going to the network
+     * @param jsonFile The OSM JSON file
+     * @param filename The .map file to write
+     * @return Whether the file was written
+     */
+    public boolean parseFile(String jsonFile, String filename) {
+        try {
+            new OsmJsonConverter(bounds).convert(jsonFile, filename);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            return false;
         }
-        outfile.close();
         return true;
     }
 }
@@ -0,0 +1,306 @@
+package mapmaker;
+
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import javax.json.Json;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+
+/**
+ * Converts OSM JSON (the Overpass API's [out:json] output) to the .map
+ * format in one streaming pass.  The input is read with a JsonParser, so
+ * the document is never held in memory: the only thing kept is the
+ * coordinates of the nodes seen so far, in primitive arrays.  Each way is
+ * written out as soon as it has been read.
+ *
+ * Overpass writes all the nodes before the ways, so every node a way uses
+ * is known by the time the way is read.  Segments whose nodes have not been
+ * seen are skipped.  The lines written are the same as MapMaker has always
+ * written: each segment of a way with both ends inside the bounds, in both
+ * directions unless the way is one way.
+ *
+ */
+public class OsmJsonConverter {
+    private final float[] bounds;     // [south, west, north, east]
+
+    // Node id -> index into lat/lon, by open addressing on the id
+    private long[] nodeIds = new long[1 << 12];
+    private int[] nodeIndex = new int[1 << 12];
+    private double[] lat = new double[1 << 11];
+    private double[] lon = new double[1 << 11];
+    private int numNodes;
+
+    // The way being read
+    private long[] wayNodes = new long[64];
+    private int numWayNodes;
+
+    private long segmentsWritten;
+
+    /**
+     * @param bounds [south, west, north, east].  Segments with an end
+     *   outside are left out.
+     */
+    public OsmJsonConverter(float[] bounds) {
+        this.bounds = bounds.clone();
+    }
+
+    /**
+     * Convert a stream of OSM JSON
+     * @param json The OSM JSON.  It is read to the end but not closed.
+     * @param out Where the .map lines are written.  It is flushed but not closed.
+     * @return The number of lines written
+     * @throws javax.json.JsonException If the input is not valid JSON
+     */
+    public long convert(InputStream json, Writer out) {
+        PrintWriter writer = new PrintWriter(out);
+        segmentsWritten = 0;
+        JsonParser parser = Json.createParser(json);
+        // Find the "elements" array of the top level object and skip the rest
+        if (parser.hasNext() && parser.next() == Event.START_OBJECT) {
+            Event event;
+            while ((event = parser.next()) != Event.END_OBJECT) {
+                String key = parser.getString();
+                event = parser.next();
+                if (key.equals("elements") && event == Event.START_ARRAY) {
+                    while ((event = parser.next()) != Event.END_ARRAY) {
+                        if (event == Event.START_OBJECT) {
+                            readElement(parser, writer);
+                        }
+                        else {
+                            skipValue(parser, event);
+                        }
+                    }
+                }
+                else {
+                    skipValue(parser, event);
+                }
+            }
+        }
+        parser.close();
+        writer.flush();
+        return segmentsWritten;
+    }
+
+    /**
+     * Convert an OSM JSON file to a .map file
+     * @param jsonFile The OSM JSON file
+     * @param mapFile The .map file to write
+     * @return The number of lines written
+     * @throws IOException If a file can not be read or written
+     */
+    public long convert(String jsonFile, String mapFile) throws IOException {
+        try (InputStream in = new FileInputStream(jsonFile);
+             Writer out = new BufferedWriter(new OutputStreamWriter(
+                     new FileOutputStream(mapFile), StandardCharsets.UTF_8))) {
+            return convert(in, out);
+        }
+    }
+
+    /*
+     * Read one element, from just after its START_OBJECT to its END_OBJECT.
+     * Nodes are stored and ways written out.
+     */
+    private void readElement(JsonParser parser, PrintWriter writer) {
+        String type = null;
+        long id = 0;
+        double nodeLat = Double.NaN;
+        double nodeLon = Double.NaN;
+        String street = "";
+        String highway = "";
+        String oneway = "no";
+        numWayNodes = 0;
+
+        Event event;
+        while ((event = parser.next()) != Event.END_OBJECT) {
+            String key = parser.getString();
+            event = parser.next();
+            if (key.equals("type") && event == Event.VALUE_STRING) {
+                type = parser.getString();
+            }
+            else if (key.equals("id") && event == Event.VALUE_NUMBER) {
+                id = parser.getLong();
+            }
+            else if (key.equals("lat") && event == Event.VALUE_NUMBER) {
+                nodeLat = Double.parseDouble(parser.getString());
+            }
+            else if (key.equals("lon") && event == Event.VALUE_NUMBER) {
+                nodeLon = Double.parseDouble(parser.getString());
+            }
+            else if (key.equals("nodes") && event == Event.START_ARRAY) {
+                while ((event = parser.next()) != Event.END_ARRAY) {
+                    if (numWayNodes == wayNodes.length) {
+                        wayNodes = Arrays.copyOf(wayNodes, numWayNodes * 2);
+                    }
+                    wayNodes[numWayNodes++] = parser.getLong();
+                }
+            }
+            else if (key.equals("tags") && event == Event.START_OBJECT) {
+                while ((event = parser.next()) != Event.END_OBJECT) {
+                    String tag = parser.getString();
+                    event = parser.next();
+                    if (event != Event.VALUE_STRING) {
+                        skipValue(parser, event);
+                    }
+                    else if (tag.equals("name")) {
+                        street = parser.getString();
+                    }
+                    else if (tag.equals("highway")) {
+                        highway = parser.getString();
+                    }
+                    else if (tag.equals("oneway")) {
+                        oneway = parser.getString();
+                    }
+                }
+            }
+            else {
+                skipValue(parser, event);
+            }
+        }
+
+        if ("node".equals(type)) {
+            addNode(id, nodeLat, nodeLon);
+        }
+        else if ("way".equals(type)) {
+            writeWay(writer, street, highway, !oneway.equals("no"));
+        }
+    }
+
+    /*
+     * Write the segments of the way just read
+     */
+    private void writeWay(PrintWriter writer, String street, String highway, boolean oneway) {
+        String road = "\"" + street + "\" " + highway;
+        for (int i = 0; i < numWayNodes - 1; i++) {
+            int start = findNode(wayNodes[i]);
+            int end = findNode(wayNodes[i + 1]);
+            if (start < 0 || end < 0 || outsideBounds(start) || outsideBounds(end)) {
+                continue;
+            }
+            writer.println(location(start) + location(end) + road);
+            segmentsWritten++;
+            if (!oneway) {
+                writer.println(location(end) + location(start) + road);
+                segmentsWritten++;
+            }
+        }
+    }
+
+    private boolean outsideBounds(int node) {
+        return (lat[node] < bounds[0] || lat[node] > bounds[2] ||
+                lon[node] < bounds[1] || lon[node] > bounds[3]);
+    }
+
+    private String location(int node) {
+        return "" + lat[node] + " " + lon[node] + " ";
+    }
+
+    /*
+     * Skip the value that starts with event, which has just been read
+     */
+    private static void skipValue(JsonParser parser, Event event) {
+        if (event != Event.START_OBJECT && event != Event.START_ARRAY) {
+            return;
+        }
+        int depth = 1;
+        while (depth > 0) {
+            event = parser.next();
+            if (event == Event.START_OBJECT || event == Event.START_ARRAY) {
+                depth++;
+            }
+            else if (event == Event.END_OBJECT || event == Event.END_ARRAY) {
+                depth--;
+            }
+        }
+    }
+
+    /*
+     * Store the coordinates of a node.  A node seen twice keeps the later ones.
+     */
+    private void addNode(long id, double nodeLat, double nodeLon) {
+        int slot = slotOf(id);
+        int node;
+        if (nodeIndex[slot] > 0) {
+            node = nodeIndex[slot] - 1;
+        }
+        else {
+            if (numNodes == lat.length) {
+                lat = Arrays.copyOf(lat, numNodes * 2);
+                lon = Arrays.copyOf(lon, numNodes * 2);
+            }
+            node = numNodes++;
+            nodeIds[slot] = id;
+            nodeIndex[slot] = node + 1;
+            if (numNodes * 2 > nodeIds.length) {
+                growNodeTable();
+            }
+        }
+        lat[node] = nodeLat;
+        lon[node] = nodeLon;
+    }
+
+    /*
+     * The index of a node's coordinates, or -1 if it has not been seen
+     */
+    private int findNode(long id) {
+        return nodeIndex[slotOf(id)] - 1;
+    }
+
+    /*
+     * The slot holding id, or the empty slot where it would go.  Empty
+     * slots have nodeIndex 0; filled ones hold the index plus one.
+     */
+    private int slotOf(long id) {
+        int mask = nodeIds.length - 1;
+        long h = id * 0x9E3779B97F4A7C15L;
+        int slot = (int)(h ^ (h >>> 32)) & mask;
+        while (nodeIndex[slot] != 0 && nodeIds[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void growNodeTable() {
+        long[] oldIds = nodeIds;
+        int[] oldIndex = nodeIndex;
+        nodeIds = new long[oldIds.length * 2];
+        nodeIndex = new int[oldIds.length * 2];
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIndex[i] != 0) {
+                int slot = slotOf(oldIds[i]);
+                nodeIds[slot] = oldIds[i];
+                nodeIndex[slot] = oldIndex[i];
+            }
+        }
+    }
+
+    /**
+     * Convert a saved Overpass response:
+     * <pre>
+     *   java mapmaker.OsmJsonConverter in.json out.map [south west north east]
+     * </pre>
+     * Without bounds nothing is left out.
+     * @param args The files and optional bounds
+     * @throws IOException If a file can not be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 && args.length != 6) {
+            System.out.println("Usage: OsmJsonConverter in.json out.map [south west north east]");
+            return;
+        }
+        float[] bounds = {-Float.MAX_VALUE, -Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+        for (int i = 2; i < args.length; i++) {
+            bounds[i - 2] = Float.parseFloat(args[i]);
+        }
+        long t0 = System.nanoTime();
+        long lines = new OsmJsonConverter(bounds).convert(args[0], args[1]);
+        System.out.printf("%d lines written in %.1f ms%n", lines, (System.nanoTime() - t0) / 1e6);
+    }
+}
@@ -0,0 +1,348 @@
+package roadgraph;
+
+import java.util.*;
+import java.util.function.Consumer;
+import geography.GeographicPoint;
+import geography.PointIndex;
+import util.GraphLoader;
+
+/**
+ * A frozen, int-indexed copy of a MapGraph stored in compressed sparse row
+ * (CSR) form.  Vertices are numbered 0 .. n-1 with the same ids as the
+ * MapGraph's nodes, and the out-edges of vertex v are the entries
+ * offsets[v] .. offsets[v+1]-1 of the parallel edge arrays.
+ *
+ * The searches run directly on these primitive arrays, so no GeographicPoint
+ * is touched between the start lookup and building the returned path.
+ * The graph can not be changed once built.  Build a new one from the
+ * MapGraph if the MapGraph changes; isCurrent() tells when it has.  Searches keep their state in pooled
+ * SearchContexts, so one CSRGraph can serve many threads at once.
+ *
+ */
+public class CSRGraph {
+	// Vertex data, indexed by vertex id
+	final double[] lat;
+	final double[] lon;
+	final GeographicPoint[] points;
+
+	// Edge data.  Out-edges of v are offsets[v] .. offsets[v+1]-1
+	final int[] offsets;
+	final int[] targets;
+	final double[] lengths;
+	final String[] roadNames;
+	final String[] roadTypes;
+
+	// Location to vertex id, on fixed point coordinates, as in MapGraph.
+	// Only used at the API edge
+	private final PointIndex index;
+
+	// Per-query search state
+	private final SearchContextPool contexts = new SearchContextPool();
+
+	// The graph this is a copy of, and its version when copied.  null for
+	// graphs that were not copied from a MapGraph
+	final MapGraph source;
+	final long sourceVersion;
+
+	/**
+	 * Create a CSR copy of a loaded MapGraph
+	 * @param graph The graph to copy.  It is not changed.
+	 */
+	public CSRGraph(MapGraph graph)
+	{
+		source = graph;
+		sourceVersion = graph.getVersion();
+		int n = graph.getNumVertices();
+		lat = new double[n];
+		lon = new double[n];
+		points = new GeographicPoint[n];
+		index = new PointIndex(n);
+
+		//Vertex ids are the MapGraph node ids, so tables built on either graph line up
+		for(int id=0;id<n;id++){
+			GeographicPoint pt = graph.getNode(id).getLoc();
+			points[id] = pt;
+			lat[id] = pt.getX();
+			lon[id] = pt.getY();
+			index.put(pt, id);
+		}
+
+		//Count out-edges per vertex, then prefix sum into offsets
+		offsets = new int[n+1];
+		for(int v=0;v<n;v++){
+			offsets[v+1] = offsets[v] + graph.getNode(v).getNumEdges();
+		}
+		int m = offsets[n];
+		targets = new int[m];
+		lengths = new double[m];
+		roadNames = new String[m];
+		roadTypes = new String[m];
+
+		for(int v=0;v<n;v++){
+			int e = offsets[v];
+			for(MapEdge edge : graph.getNode(v).getEdges()){
+				targets[e] = edge.getEndId();
+				lengths[e] = edge.getLength();
+				roadNames[e] = edge.getRoadName();
+				roadTypes[e] = edge.getRoadType();
+				e++;
+			}
+		}
+	}
+
+	/*
+	 *  Wrap arrays that are already in CSR form, e.g. read from a CompiledMap.
+	 *  The arrays are not copied.
+	 */
+	CSRGraph(double[] lat, double[] lon, int[] offsets, int[] targets, double[] lengths,
+			 String[] roadNames, String[] roadTypes)
+	{
+		int n = lat.length;
+		this.lat = lat;
+		this.lon = lon;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.lengths = lengths;
+		this.roadNames = roadNames;
+		this.roadTypes = roadTypes;
+		source = null;
+		sourceVersion = 0;
+		points = new GeographicPoint[n];
+		index = new PointIndex(n);
+		for(int id=0;id<n;id++){
+			points[id] = new GeographicPoint(lat[id], lon[id]);
+			index.put(points[id], id);
+		}
+	}
+
+	/**
+	 * Get the number of vertices (road intersections) in the graph
+	 * @return The number of vertices in the graph.
+	 */
+	public int getNumVertices()
+	{
+		return points.length;
+	}
+
+	/**
+	 * Whether this is still an exact copy of the MapGraph it was built from
+	 * @return false if that MapGraph has changed since.  Always true for a
+	 *   graph that was not copied from a MapGraph.
+	 */
+	public boolean isCurrent()
+	{
+		return source == null || source.getVersion() == sourceVersion;
+	}
+
+	/**
+	 * Get the number of road segments in the graph
+	 * @return The number of edges in the graph.
+	 */
+	public int getNumEdges()
+	{
+		return targets.length;
+	}
+
+	/**
+	 * Get the id of the vertex at a location
+	 * @param location The location of the intersection
+	 * @return The vertex id, or -1 if the location is not a vertex
+	 */
+	public int indexOf(GeographicPoint location)
+	{
+		return index.get(location);
+	}
+
+	/**
+	 * Get the location of a vertex
+	 * @param v The vertex id
+	 * @return The location of vertex v
+	 */
+	public GeographicPoint getVertex(int v)
+	{
+		return points[v];
+	}
+
+	/** Find the path from start to goal using breadth first search
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @return The list of intersections that form the shortest (unweighted)
+	 *   path from start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> bfs(GeographicPoint start, GeographicPoint goal) {
+		Consumer<GeographicPoint> temp = (x) -> {};
+		return bfs(start, goal, temp);
+	}
+
+	/** Find the path from start to goal using breadth first search
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param nodeSearched A hook for visualization.
+	 * @return The list of intersections that form the shortest (unweighted)
+	 *   path from start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> bfs(GeographicPoint start,
+									 GeographicPoint goal, Consumer<GeographicPoint> nodeSearched)
+	{
+		int s = indexOf(start);
+		int t = indexOf(goal);
+		if (s < 0 || t < 0) return null;
+
+		int n = points.length;
+		SearchContext ctx = contexts.acquire(n);
+		try {
+			ctx.update(s, 0.0, s);
+			//Every vertex is enqueued at most once so a plain array is enough
+			int[] queue = ctx.getFifo();
+			int head = 0, tail = 0;
+			queue[tail++] = s;
+
+			while(head < tail){
+				int curr = queue[head++];
+				nodeSearched.accept(points[curr]);
+				if(curr == t){
+					return constructPath(s, t, ctx);
+				}
+				for(int e=offsets[curr];e<offsets[curr+1];e++){
+					int n2 = targets[e];
+					if(!ctx.isReached(n2)){
+						ctx.update(n2, ctx.getDist(curr) + lengths[e], curr);
+						queue[tail++] = n2;
+					}
+				}
+			}
+			return null;
+		}
+		finally {
+			contexts.release(ctx);
+		}
+	}
+
+	/** Find the path from start to goal using Dijkstra's algorithm
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @return The list of intersections that form the shortest path from
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> dijkstra(GeographicPoint start, GeographicPoint goal) {
+		Consumer<GeographicPoint> temp = (x) -> {};
+		return dijkstra(start, goal, temp);
+	}
+
+	/** Find the path from start to goal using Dijkstra's algorithm
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param nodeSearched A hook for visualization.
+	 * @return The list of intersections that form the shortest path from
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> dijkstra(GeographicPoint start,
+										  GeographicPoint goal,
+										  Consumer<GeographicPoint> nodeSearched)
+	{
+		return shortestPath(start, goal, false, nodeSearched);
+	}
+
+	/** Find the path from start to goal using A-Star search
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @return The list of intersections that form the shortest path from
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> aStarSearch(GeographicPoint start, GeographicPoint goal) {
+		Consumer<GeographicPoint> temp = (x) -> {};
+		return aStarSearch(start, goal, temp);
+	}
+
+	/** Find the path from start to goal using A-Star search
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param nodeSearched A hook for visualization.
+	 * @return The list of intersections that form the shortest path from
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> aStarSearch(GeographicPoint start,
+											 GeographicPoint goal,
+											 Consumer<GeographicPoint> nodeSearched)
+	{
+		return shortestPath(start, goal, true, nodeSearched);
+	}
+
+	/*
+	 *  Dijkstra, or A* with the straight line distance when useHeuristic is set.
+	 *  Uses the context's indexed queue, so each vertex is queued at most once.
+	 */
+	private List<GeographicPoint> shortestPath(GeographicPoint start,
+											   GeographicPoint goal,
+											   boolean useHeuristic,
+											   Consumer<GeographicPoint> nodeSearched)
+	{
+		int s = indexOf(start);
+		int t = indexOf(goal);
+		if (s < 0 || t < 0) return null;
+
+		SearchContext ctx = contexts.acquire(points.length);
+		try {
+			IndexedPriorityQueue q = ctx.getQueue();
+			ctx.update(s, 0.0, s);
+			q.insert(s, 0.0);
+
+			while(!q.isEmpty()){
+				int curr = q.removeMin();
+				ctx.settle(curr);
+				nodeSearched.accept(points[curr]);
+				if(curr == t){
+					return constructPath(s, t, ctx);
+				}
+				double currDist = ctx.getDist(curr);
+				for(int e=offsets[curr];e<offsets[curr+1];e++){
+					int n2 = targets[e];
+					double d = currDist + lengths[e];
+					if(!ctx.isSettled(n2) && d < ctx.getDist(n2)){
+						ctx.update(n2, d, curr);
+						double h = useHeuristic ?
+								GeographicPoint.getDist(lat[n2], lon[n2], lat[t], lon[t]) : 0.0;
+						q.insertOrDecrease(n2, d + h);
+					}
+				}
+			}
+			return null;
+		}
+		finally {
+			contexts.release(ctx);
+		}
+	}
+
+	/*
+	 *  Walks the parents recorded in ctx back from goal to start
+	 */
+	private List<GeographicPoint> constructPath(int start, int goal, SearchContext ctx)
+	{
+		return SearchResult.fromParents(ctx, start, goal, this::getVertex, null).getPath();
+	}
+
+	public static void main(String[] args)
+	{
+		MapGraph theMap = new MapGraph();
+		System.out.print("Loading the map...");
+		GraphLoader.loadRoadMap("data/maps/utc.map", theMap);
+		System.out.println("DONE.");
+
+		CSRGraph csr = new CSRGraph(theMap);
+		System.out.println("CSR graph with " + csr.getNumVertices() + " vertices and "
+				+ csr.getNumEdges() + " edges.");
+
+		GeographicPoint start = new GeographicPoint(32.8648772, -117.2254046);
+		GeographicPoint end = new GeographicPoint(32.8660691, -117.217393);
+
+		System.out.println("BFS:      " + csr.bfs(start, end));
+		System.out.println("Dijkstra: " + csr.dijkstra(start, end));
+		System.out.println("A*:       " + csr.aStarSearch(start, end));
+	}
+}
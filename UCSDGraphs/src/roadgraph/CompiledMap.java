@@ -0,0 +1,412 @@
+package roadgraph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import geography.GeographicPoint;
+import geography.RoadSegment;
+import util.BinaryTables;
+import util.GraphLoader;
+
+/**
+ * A road map compiled to a binary file: the collapsed intersection graph in
+ * CSR form, the road names and types, and the RoadSegment geometry.
+ * Compiling does the expensive part of GraphLoader.loadRoadMap (parsing
+ * the text, finding the intersections and tracing every edge) once;
+ * opening a compiled map memory maps the file with FileChannel.map and
+ * bulk copies the graph arrays out of it, so start-up time depends only
+ * on the size of the graph.  The road geometry stays in the mapping and
+ * is only decoded when getSegments() is first called.
+ *
+ * File layout, all numbers big-endian:
+ * <pre>
+ *   header   int magic, int version, int numVertices, int numEdges,
+ *            int numSegments, int numGeometryPoints, int numStrings
+ *   vertices double lat[numVertices], double lon[numVertices]
+ *   edges    int offsets[numVertices+1], int target[numEdges],
+ *            double length[numEdges], int name[numEdges], int type[numEdges]
+ *   segments int from[numSegments], int to[numSegments],
+ *            int name[numSegments], int type[numSegments],
+ *            double length[numSegments], int geometryOffsets[numSegments+1],
+ *            double lat[numGeometryPoints], double lon[numGeometryPoints]
+ *   strings  numStrings times: int byteLength, UTF-8 bytes
+ * </pre>
+ * Names and types are indexes into the string table.  Segment end points
+ * are vertex ids.  Vertex ids are the ids of the MapGraph that was compiled.
+ *
+ */
+public class CompiledMap {
+	private static final int MAGIC = 0x55434D50;	//"UCMP"
+	/** The version of the file layout written by this class */
+	public static final int VERSION = 1;
+	private static final int HEADER_BYTES = 7 * 4;
+
+	private final MappedByteBuffer data;
+	private final int numVertices;
+	private final int numEdges;
+	private final int numSegments;
+	private final int numGeometryPoints;
+	private final String[] strings;
+
+	// Byte offsets of the sections that are read on demand
+	private final int edgesStart;
+	private final int segmentsStart;
+
+	private CSRGraph graph;
+	private HashMap<GeographicPoint,HashSet<RoadSegment>> segments;
+
+	/*
+	 *  Validate the header of a mapped file and decode the string table
+	 */
+	private CompiledMap(MappedByteBuffer data, String filename) throws IOException
+	{
+		this.data = data;
+		if (data.capacity() < HEADER_BYTES || data.getInt(0) != MAGIC) {
+			throw new IOException("Not a compiled map: " + filename);
+		}
+		int version = data.getInt(4);
+		if (version != VERSION) {
+			throw new IOException("Unsupported compiled map version " + version + " in " + filename);
+		}
+		numVertices = data.getInt(8);
+		numEdges = data.getInt(12);
+		numSegments = data.getInt(16);
+		numGeometryPoints = data.getInt(20);
+		int numStrings = data.getInt(24);
+
+		edgesStart = HEADER_BYTES + 16 * numVertices;
+		segmentsStart = edgesStart + 4 * (numVertices + 1) + 20 * numEdges;
+		int stringsStart = segmentsStart + 24 * numSegments + 4 * (numSegments + 1)
+				+ 16 * numGeometryPoints;
+		if (numVertices < 0 || numEdges < 0 || numSegments < 0 || numGeometryPoints < 0
+				|| numStrings < 0 || stringsStart > data.capacity()) {
+			throw new IOException("Truncated compiled map: " + filename);
+		}
+
+		ByteBuffer in = data.duplicate();
+		in.position(stringsStart);
+		strings = BinaryTables.readStrings(in, numStrings, "compiled map: " + filename);
+	}
+
+	/**
+	 * Memory map a compiled map file
+	 * @param filename The file written by compile or write
+	 * @return The opened map
+	 * @throws IOException If the file can not be read, is not a compiled
+	 *   map or was written by a different version
+	 */
+	public static CompiledMap open(String filename) throws IOException
+	{
+		//The mapping stays valid after the channel is closed
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			return new CompiledMap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), filename);
+		}
+	}
+
+	/**
+	 * Load a text road map and write it as a compiled map
+	 * @param mapFile The road map in the format read by GraphLoader.loadRoadMap
+	 * @param compiledFile The file to write
+	 * @throws IOException If the compiled file can not be written
+	 */
+	public static void compile(String mapFile, String compiledFile) throws IOException
+	{
+		MapGraph map = new MapGraph();
+		HashMap<GeographicPoint,HashSet<RoadSegment>> segments =
+				new HashMap<GeographicPoint,HashSet<RoadSegment>>();
+		GraphLoader.loadRoadMap(mapFile, map, segments, null);
+		write(map, segments, compiledFile);
+	}
+
+	/**
+	 * Write a loaded graph and its road segments as a compiled map
+	 * @param map The graph
+	 * @param segments The road segments of the graph, as filled in by
+	 *   GraphLoader.loadRoadMap.  May be null.
+	 * @param compiledFile The file to write
+	 * @throws IOException If the file can not be written
+	 */
+	public static void write(MapGraph map, Map<GeographicPoint,HashSet<RoadSegment>> segments,
+							 String compiledFile) throws IOException
+	{
+		CSRGraph g = new CSRGraph(map);
+		int n = g.getNumVertices();
+		int m = g.getNumEdges();
+
+		//Every segment is stored once, although it is listed at both of its ends
+		List<RoadSegment> segs = new ArrayList<RoadSegment>();
+		if (segments != null) {
+			Set<RoadSegment> seen = new HashSet<RoadSegment>();
+			for (int v = 0; v < n; v++) {
+				HashSet<RoadSegment> atV = segments.get(g.getVertex(v));
+				if (atV == null) continue;
+				for (RoadSegment seg : atV) {
+					if (seen.add(seg)) {
+						segs.add(seg);
+					}
+				}
+			}
+		}
+		//String table, in order of first use
+		LinkedHashMap<String,Integer> table = new LinkedHashMap<String,Integer>();
+		int numGeometryPoints = 0;
+		for (int e = 0; e < m; e++) {
+			BinaryTables.intern(table, g.roadNames[e]);
+			BinaryTables.intern(table, g.roadTypes[e]);
+		}
+		for (RoadSegment seg : segs) {
+			BinaryTables.intern(table, seg.getRoadName());
+			BinaryTables.intern(table, seg.getRoadType());
+			numGeometryPoints += seg.getGeometryPoints().size();
+		}
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(compiledFile), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(n);
+			out.writeInt(m);
+			out.writeInt(segs.size());
+			out.writeInt(numGeometryPoints);
+			out.writeInt(table.size());
+
+			for (int v = 0; v < n; v++) out.writeDouble(g.lat[v]);
+			for (int v = 0; v < n; v++) out.writeDouble(g.lon[v]);
+
+			for (int v = 0; v <= n; v++) out.writeInt(g.offsets[v]);
+			for (int e = 0; e < m; e++) out.writeInt(g.targets[e]);
+			for (int e = 0; e < m; e++) out.writeDouble(g.lengths[e]);
+			for (int e = 0; e < m; e++) out.writeInt(table.get(g.roadNames[e]));
+			for (int e = 0; e < m; e++) out.writeInt(table.get(g.roadTypes[e]));
+
+			for (RoadSegment seg : segs) out.writeInt(g.indexOf(seg.getPoint1()));
+			for (RoadSegment seg : segs) out.writeInt(g.indexOf(seg.getPoint2()));
+			for (RoadSegment seg : segs) out.writeInt(table.get(seg.getRoadName()));
+			for (RoadSegment seg : segs) out.writeInt(table.get(seg.getRoadType()));
+			for (RoadSegment seg : segs) out.writeDouble(seg.getLength());
+			int offset = 0;
+			out.writeInt(offset);
+			for (RoadSegment seg : segs) {
+				offset += seg.getGeometryPoints().size();
+				out.writeInt(offset);
+			}
+			for (RoadSegment seg : segs) {
+				for (GeographicPoint p : seg.getGeometryPoints()) out.writeDouble(p.getX());
+			}
+			for (RoadSegment seg : segs) {
+				for (GeographicPoint p : seg.getGeometryPoints()) out.writeDouble(p.getY());
+			}
+
+			BinaryTables.writeStrings(table, out);
+		}
+	}
+
+	/**
+	 * @return The number of intersections in the map
+	 */
+	public int getNumVertices()
+	{
+		return numVertices;
+	}
+
+	/**
+	 * @return The number of road segments (edges) in the map
+	 */
+	public int getNumEdges()
+	{
+		return numEdges;
+	}
+
+	/**
+	 * Get the map as a read-only graph.  It answers the same bfs, dijkstra
+	 * and aStarSearch queries as the MapGraph that was compiled.
+	 * @return The graph, built on the first call
+	 */
+	public synchronized CSRGraph getGraph()
+	{
+		if (graph == null) {
+			int pos = HEADER_BYTES;
+			double[] lat = doubles(pos, numVertices);
+			double[] lon = doubles(pos += 8 * numVertices, numVertices);
+			pos = edgesStart;
+			int[] offsets = ints(pos, numVertices + 1);
+			int[] targets = ints(pos += 4 * (numVertices + 1), numEdges);
+			double[] lengths = doubles(pos += 4 * numEdges, numEdges);
+			String[] names = lookup(ints(pos += 8 * numEdges, numEdges));
+			String[] types = lookup(ints(pos += 4 * numEdges, numEdges));
+			graph = new CSRGraph(lat, lon, offsets, targets, lengths, names, types);
+		}
+		return graph;
+	}
+
+	/**
+	 * Get the road geometry, in the same form GraphLoader.loadRoadMap
+	 * fills in: every segment is listed at both of its end points.
+	 * @return The segments by intersection, decoded on the first call
+	 */
+	public synchronized HashMap<GeographicPoint,HashSet<RoadSegment>> getSegments()
+	{
+		if (segments == null) {
+			CSRGraph g = getGraph();
+			int s = numSegments;
+			int pos = segmentsStart;
+			int[] from = ints(pos, s);
+			int[] to = ints(pos += 4 * s, s);
+			String[] names = lookup(ints(pos += 4 * s, s));
+			String[] types = lookup(ints(pos += 4 * s, s));
+			double[] lengths = doubles(pos += 4 * s, s);
+			int[] geometry = ints(pos += 8 * s, s + 1);
+			double[] lat = doubles(pos += 4 * (s + 1), numGeometryPoints);
+			double[] lon = doubles(pos += 8 * numGeometryPoints, numGeometryPoints);
+
+			segments = new HashMap<GeographicPoint,HashSet<RoadSegment>>(numVertices * 2);
+			for (int i = 0; i < s; i++) {
+				List<GeographicPoint> points = new ArrayList<GeographicPoint>(geometry[i+1] - geometry[i]);
+				for (int k = geometry[i]; k < geometry[i+1]; k++) {
+					points.add(new GeographicPoint(lat[k], lon[k]));
+				}
+				GeographicPoint p1 = g.getVertex(from[i]);
+				GeographicPoint p2 = g.getVertex(to[i]);
+				RoadSegment seg = new RoadSegment(p1, p2, points, names[i], types[i], lengths[i]);
+				addSegment(p1, seg);
+				addSegment(p2, seg);
+			}
+		}
+		return segments;
+	}
+
+	private void addSegment(GeographicPoint p, RoadSegment seg)
+	{
+		HashSet<RoadSegment> segs = segments.get(p);
+		if (segs == null) {
+			segs = new HashSet<RoadSegment>();
+			segments.put(p, segs);
+		}
+		segs.add(seg);
+	}
+
+	/**
+	 * Load the compiled map into a MapGraph, for callers that need a graph
+	 * they can change.  Vertices are added in id order, so the MapGraph
+	 * gets the same node ids as the one that was compiled.
+	 * @param map The graph to load into
+	 * @param segments If not null, filled in with the road geometry
+	 * @param intersectionsToLoad If not null, filled in with the intersections
+	 */
+	public void loadInto(MapGraph map, HashMap<GeographicPoint,HashSet<RoadSegment>> segments,
+						 Set<GeographicPoint> intersectionsToLoad)
+	{
+		CSRGraph g = getGraph();
+		for (int v = 0; v < numVertices; v++) {
+			map.addVertex(g.getVertex(v));
+			if (intersectionsToLoad != null) {
+				intersectionsToLoad.add(g.getVertex(v));
+			}
+		}
+		for (int v = 0; v < numVertices; v++) {
+			for (int e = g.offsets[v]; e < g.offsets[v+1]; e++) {
+				map.addEdge(g.getVertex(v), g.getVertex(g.targets[e]), g.roadNames[e],
+						g.roadTypes[e], g.lengths[e]);
+			}
+		}
+		if (segments != null) {
+			segments.putAll(getSegments());
+		}
+	}
+
+	/*
+	 *  Bulk copy a section of the mapping.  Each call works on its own
+	 *  view, so the shared buffer's position is never touched.
+	 */
+	private double[] doubles(int pos, int count)
+	{
+		return BinaryTables.doubles(at(pos), count);
+	}
+
+	private int[] ints(int pos, int count)
+	{
+		return BinaryTables.ints(at(pos), count);
+	}
+
+	private ByteBuffer at(int pos)
+	{
+		ByteBuffer view = data.duplicate();
+		view.position(pos);
+		return view;
+	}
+
+	private String[] lookup(int[] ids)
+	{
+		String[] values = new String[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			values[i] = strings[ids[i]];
+		}
+		return values;
+	}
+
+	/**
+	 * Compile a bundled map, time loading the text against opening the
+	 * compiled file and check that both give the same shortest paths.
+	 * @param args Optionally the .map file to use
+	 * @throws IOException If the temporary compiled file can not be written
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		String mapFile = args.length > 0 ? args[0] : "data/maps/hollywood_large.map";
+		File compiled = File.createTempFile("roadmap", ".cmap");
+		compiled.deleteOnExit();
+
+		long t0 = System.nanoTime();
+		MapGraph map = new MapGraph();
+		HashMap<GeographicPoint,HashSet<RoadSegment>> textSegments =
+				new HashMap<GeographicPoint,HashSet<RoadSegment>>();
+		GraphLoader.loadRoadMap(mapFile, map, textSegments, null);
+		long t1 = System.nanoTime();
+		write(map, textSegments, compiled.getPath());
+		long t2 = System.nanoTime();
+		CompiledMap cm = open(compiled.getPath());
+		CSRGraph graph = cm.getGraph();
+		long t3 = System.nanoTime();
+		HashMap<GeographicPoint,HashSet<RoadSegment>> segments = cm.getSegments();
+		long t4 = System.nanoTime();
+
+		System.out.println(mapFile + ": " + cm.getNumVertices() + " vertices, " + cm.getNumEdges()
+				+ " edges, " + compiled.length() / 1024 + " KB compiled");
+		System.out.printf("  load text map        %8.1f ms%n", (t1 - t0) / 1e6);
+		System.out.printf("  write compiled map   %8.1f ms%n", (t2 - t1) / 1e6);
+		System.out.printf("  open compiled graph  %8.1f ms%n", (t3 - t2) / 1e6);
+		System.out.printf("  decode segments      %8.1f ms%n", (t4 - t3) / 1e6);
+
+		List<GeographicPoint> vertices = new ArrayList<GeographicPoint>(map.getVertices());
+		Random rand = new Random(42);
+		int differ = 0;
+		for (int i = 0; i < 200; i++) {
+			GeographicPoint s = vertices.get(rand.nextInt(vertices.size()));
+			GeographicPoint t = vertices.get(rand.nextInt(vertices.size()));
+			SearchResult expected = map.dijkstraRoute(s, t, (x) -> {});
+			List<GeographicPoint> path = graph.dijkstra(s, t);
+			if ((expected == null) != (path == null)
+					|| (path != null && path.size() != expected.size())) {
+				differ++;
+			}
+		}
+		System.out.println("  differing paths: " + differ + "/200, segments equal: "
+				+ segments.equals(textSegments));
+	}
+}
@@ -0,0 +1,496 @@
+package roadgraph;
+
+import java.util.*;
+import java.util.function.Consumer;
+import geography.GeographicPoint;
+import util.GraphLoader;
+
+/**
+ * Contraction Hierarchies for repeated shortest path queries on a fixed map.
+ *
+ * Preprocessing contracts the vertices one at a time, least important first
+ * (priority = edge difference + number of already contracted neighbours).
+ * Contracting v adds a shortcut u -> w for every pair of remaining
+ * neighbours whose shortest path runs through v, unless a local witness
+ * search finds another path that is no longer.  Each vertex's rank is the
+ * order in which it was contracted.
+ *
+ * A query is a bidirectional Dijkstra that only follows edges towards
+ * higher ranked vertices, so it settles far fewer vertices than a plain
+ * search.  Shortcuts remember the two edges they replace and are unpacked
+ * back into the original intersections, so the result is the same kind of
+ * List of GeographicPoints that MapGraph.dijkstra returns.
+ *
+ */
+public class ContractionHierarchy {
+	// Witness searches give up after settling this many vertices.  Giving up
+	// early only adds a shortcut that is not strictly needed.
+	private static final int WITNESS_SETTLE_LIMIT = 100;
+
+	private final CSRGraph graph;
+	private final int[] rank;
+
+	// Edge table for original edges and shortcuts.  A shortcut replaces
+	// childA followed by childB; original edges have childA == -1.
+	private int numEdgeIds;
+	private int[] edgeFrom;
+	private int[] edgeTo;
+	private double[] edgeLength;
+	private int[] childA;
+	private int[] childB;
+	// Edges replaced by a shorter one between the same vertices.  They stay
+	// in the table because earlier shortcuts may be made of them, but they
+	// are left out of the search graph.
+	private boolean[] superseded;
+
+	// Upward search graph in CSR form.  upOut holds the edges v -> w with
+	// rank[w] > rank[v]; upIn holds the edges w -> v with rank[w] > rank[v],
+	// stored at v for the backward search.  Both hold edge table ids.
+	private final int[] upOutOffsets;
+	private final int[] upOutEdges;
+	private final int[] upInOffsets;
+	private final int[] upInEdges;
+
+	private final SearchContextPool contexts = new SearchContextPool();
+
+	/**
+	 * Preprocess a loaded map.  The map is copied and not changed.
+	 * @param map The road map to build the hierarchy for
+	 */
+	public ContractionHierarchy(MapGraph map)
+	{
+		this(new CSRGraph(map));
+	}
+
+	/**
+	 * Preprocess a CSR graph
+	 * @param graph The graph to build the hierarchy for
+	 */
+	public ContractionHierarchy(CSRGraph graph)
+	{
+		this.graph = graph;
+		int n = graph.getNumVertices();
+		int m = graph.getNumEdges();
+		rank = new int[n];
+
+		edgeFrom = new int[Math.max(m * 2, 16)];
+		edgeTo = new int[edgeFrom.length];
+		edgeLength = new double[edgeFrom.length];
+		childA = new int[edgeFrom.length];
+		childB = new int[edgeFrom.length];
+		superseded = new boolean[edgeFrom.length];
+		numEdgeIds = 0;
+
+		//Working adjacency of the not yet contracted graph, as edge ids
+		IntList[] out = new IntList[n];
+		IntList[] in = new IntList[n];
+		for (int v = 0; v < n; v++) {
+			out[v] = new IntList();
+			in[v] = new IntList();
+		}
+		for (int v = 0; v < n; v++) {
+			for (int e = graph.offsets[v]; e < graph.offsets[v+1]; e++) {
+				addOrImprove(v, graph.targets[e], graph.lengths[e], -1, -1, out, in);
+			}
+		}
+
+		contract(out, in);
+
+		//Keep only the upward edges that have not been superseded, as CSR arrays
+		upOutOffsets = new int[n+1];
+		upInOffsets = new int[n+1];
+		for (int e = 0; e < numEdgeIds; e++) {
+			if (superseded[e]) continue;
+			if (rank[edgeTo[e]] > rank[edgeFrom[e]]) {
+				upOutOffsets[edgeFrom[e]+1]++;
+			}
+			else if (rank[edgeFrom[e]] > rank[edgeTo[e]]) {
+				upInOffsets[edgeTo[e]+1]++;
+			}
+		}
+		for (int v = 0; v < n; v++) {
+			upOutOffsets[v+1] += upOutOffsets[v];
+			upInOffsets[v+1] += upInOffsets[v];
+		}
+		upOutEdges = new int[upOutOffsets[n]];
+		upInEdges = new int[upInOffsets[n]];
+		int[] outFill = Arrays.copyOf(upOutOffsets, n);
+		int[] inFill = Arrays.copyOf(upInOffsets, n);
+		for (int e = 0; e < numEdgeIds; e++) {
+			if (superseded[e]) continue;
+			if (rank[edgeTo[e]] > rank[edgeFrom[e]]) {
+				upOutEdges[outFill[edgeFrom[e]]++] = e;
+			}
+			else if (rank[edgeFrom[e]] > rank[edgeTo[e]]) {
+				upInEdges[inFill[edgeTo[e]]++] = e;
+			}
+		}
+	}
+
+	/**
+	 * @return The number of shortcut edges added by preprocessing
+	 */
+	public int getNumShortcuts()
+	{
+		int count = 0;
+		for (int e = 0; e < numEdgeIds; e++) {
+			if (childA[e] >= 0 && !superseded[e]) count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Whether the hierarchy still gives shortest paths on the MapGraph it
+	 * was built from.  Road type changes do not matter to it, but any added,
+	 * removed or closed road does, and the hierarchy has to be rebuilt.
+	 * @return false if the roads of that MapGraph have changed since.
+	 *   Always true for a hierarchy not built from a MapGraph.
+	 */
+	public boolean isCurrent()
+	{
+		return graph.source == null || graph.source.getTopologyVersion() <= graph.sourceVersion;
+	}
+
+	/** Find the shortest path from start to goal
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @return The list of intersections that form the shortest path from
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> query(GeographicPoint start, GeographicPoint goal)
+	{
+		Consumer<GeographicPoint> temp = (x) -> {};
+		return query(start, goal, temp);
+	}
+
+	/** Find the shortest path from start to goal
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param nodeSearched A hook for visualization.  It sees the vertices
+	 *   settled by both upward searches.
+	 * @return The list of intersections that form the shortest path from
+	 *   start to goal (including both start and goal), or null if there is none.
+	 */
+	public List<GeographicPoint> query(GeographicPoint start, GeographicPoint goal,
+									   Consumer<GeographicPoint> nodeSearched)
+	{
+		int s = graph.indexOf(start);
+		int t = graph.indexOf(goal);
+		if (s < 0 || t < 0) return null;
+
+		int n = graph.getNumVertices();
+		SearchContext fwd = contexts.acquire(n);
+		SearchContext bwd = contexts.acquire(n);
+		try {
+			//The parent of a vertex is the id of the edge it was reached by, -1 at the ends
+			fwd.update(s, 0.0, -1);
+			fwd.getQueue().insert(s, 0.0);
+			bwd.update(t, 0.0, -1);
+			bwd.getQueue().insert(t, 0.0);
+
+			double best = Double.POSITIVE_INFINITY;
+			int meet = -1;
+			IndexedPriorityQueue qf = fwd.getQueue();
+			IndexedPriorityQueue qb = bwd.getQueue();
+			while (true) {
+				//Each side keeps going until its smallest key can not beat the best path
+				boolean moreF = !qf.isEmpty() && qf.getPriority(qf.peek()) < best;
+				boolean moreB = !qb.isEmpty() && qb.getPriority(qb.peek()) < best;
+				if (!moreF && !moreB) break;
+				boolean forward = moreF && (!moreB || qf.getPriority(qf.peek()) <= qb.getPriority(qb.peek()));
+
+				SearchContext ctx = forward ? fwd : bwd;
+				SearchContext other = forward ? bwd : fwd;
+				int v = ctx.getQueue().removeMin();
+				ctx.settle(v);
+				nodeSearched.accept(graph.getVertex(v));
+				double dv = ctx.getDist(v);
+				if (other.isReached(v) && dv + other.getDist(v) < best) {
+					best = dv + other.getDist(v);
+					meet = v;
+				}
+
+				int[] offsets = forward ? upOutOffsets : upInOffsets;
+				int[] edges = forward ? upOutEdges : upInEdges;
+				for (int i = offsets[v]; i < offsets[v+1]; i++) {
+					int e = edges[i];
+					int w = forward ? edgeTo[e] : edgeFrom[e];
+					double d = dv + edgeLength[e];
+					if (!ctx.isSettled(w) && d < ctx.getDist(w)) {
+						ctx.update(w, d, e);
+						ctx.getQueue().insertOrDecrease(w, d);
+					}
+				}
+			}
+			if (meet < 0) return null;
+
+			//Collect the hierarchy edges start .. meet .. goal, then unpack them
+			int numUp = 0;
+			for (int e = fwd.getParent(meet); e >= 0; e = fwd.getParent(edgeFrom[e])) {
+				numUp++;
+			}
+			int numDown = 0;
+			for (int e = bwd.getParent(meet); e >= 0; e = bwd.getParent(edgeTo[e])) {
+				numDown++;
+			}
+			int[] upEdges = new int[numUp + numDown];
+			int i = numUp;
+			for (int e = fwd.getParent(meet); e >= 0; e = fwd.getParent(edgeFrom[e])) {
+				upEdges[--i] = e;
+			}
+			i = numUp;
+			for (int e = bwd.getParent(meet); e >= 0; e = bwd.getParent(edgeTo[e])) {
+				upEdges[i++] = e;
+			}
+			List<GeographicPoint> path = new ArrayList<GeographicPoint>();
+			path.add(graph.getVertex(s));
+			for (int e : upEdges) {
+				unpack(e, path);
+			}
+			return path;
+		}
+		finally {
+			contexts.release(fwd);
+			contexts.release(bwd);
+		}
+	}
+
+	/*
+	 *  Append the end points of the original edges that e stands for
+	 */
+	private void unpack(int e, List<GeographicPoint> path)
+	{
+		IntList stack = new IntList();
+		stack.add(e);
+		while (stack.size() > 0) {
+			int top = stack.removeLast();
+			if (childA[top] < 0) {
+				path.add(graph.getVertex(edgeTo[top]));
+			}
+			else {
+				//childA comes first on the path, so push it last
+				stack.add(childB[top]);
+				stack.add(childA[top]);
+			}
+		}
+	}
+
+	/*
+	 *  Contract every vertex, least important first.  Priorities are updated
+	 *  lazily: a popped vertex is re-evaluated and put back if it is no longer
+	 *  the minimum.
+	 */
+	private void contract(IntList[] out, IntList[] in)
+	{
+		int n = rank.length;
+		boolean[] contracted = new boolean[n];
+		int[] deletedNeighbours = new int[n];
+		SearchContext witness = new SearchContext(n);
+
+		DaryHeap order = new DaryHeap(4, n);
+		for (int v = 0; v < n; v++) {
+			order.insert(v, priority(v, out, in, contracted, deletedNeighbours, witness));
+		}
+
+		int next = 0;
+		while (!order.isEmpty()) {
+			int v = order.removeMin();
+			double p = priority(v, out, in, contracted, deletedNeighbours, witness);
+			if (!order.isEmpty() && p > order.getPriority(order.peek())) {
+				order.insert(v, p);
+				continue;
+			}
+			contractVertex(v, out, in, contracted, witness, false);
+			contracted[v] = true;
+			rank[v] = next++;
+			for (int i = 0; i < out[v].size(); i++) {
+				deletedNeighbours[edgeTo[out[v].get(i)]]++;
+			}
+			for (int i = 0; i < in[v].size(); i++) {
+				deletedNeighbours[edgeFrom[in[v].get(i)]]++;
+			}
+		}
+	}
+
+	/*
+	 *  Edge difference (shortcuts added minus edges removed) plus the number
+	 *  of neighbours that were already contracted
+	 */
+	private double priority(int v, IntList[] out, IntList[] in, boolean[] contracted,
+							int[] deletedNeighbours, SearchContext witness)
+	{
+		int removed = 0;
+		for (int i = 0; i < out[v].size(); i++) {
+			if (!contracted[edgeTo[out[v].get(i)]]) removed++;
+		}
+		for (int i = 0; i < in[v].size(); i++) {
+			if (!contracted[edgeFrom[in[v].get(i)]]) removed++;
+		}
+		int added = contractVertex(v, out, in, contracted, witness, true);
+		return added - removed + deletedNeighbours[v];
+	}
+
+	/*
+	 *  Add the shortcuts needed to remove v from the remaining graph, or only
+	 *  count them when simulate is set.  Returns the number of shortcuts.
+	 */
+	private int contractVertex(int v, IntList[] out, IntList[] in, boolean[] contracted,
+							   SearchContext witness, boolean simulate)
+	{
+		//Longest path through v that a shortcut could have to replace
+		double maxOut = 0.0;
+		for (int j = 0; j < out[v].size(); j++) {
+			int e2 = out[v].get(j);
+			if (!contracted[edgeTo[e2]]) maxOut = Math.max(maxOut, edgeLength[e2]);
+		}
+
+		int shortcuts = 0;
+		for (int i = 0; i < in[v].size(); i++) {
+			int e1 = in[v].get(i);
+			int u = edgeFrom[e1];
+			if (contracted[u] || u == v) continue;
+			witnessSearch(u, v, edgeLength[e1] + maxOut, out, contracted, witness);
+			for (int j = 0; j < out[v].size(); j++) {
+				int e2 = out[v].get(j);
+				int w = edgeTo[e2];
+				if (contracted[w] || w == v || w == u) continue;
+				double viaV = edgeLength[e1] + edgeLength[e2];
+				if (witness.getDist(w) <= viaV) continue;	//another path is as short
+				shortcuts++;
+				if (!simulate) {
+					addOrImprove(u, w, viaV, e1, e2, out, in);
+				}
+			}
+		}
+		return shortcuts;
+	}
+
+	/*
+	 *  Dijkstra from u in the remaining graph without v, up to maxDist
+	 */
+	private void witnessSearch(int u, int v, double maxDist, IntList[] out,
+							   boolean[] contracted, SearchContext ctx)
+	{
+		ctx.reset(rank.length);
+		IndexedPriorityQueue q = ctx.getQueue();
+		ctx.update(u, 0.0, -1);
+		q.insert(u, 0.0);
+		int settled = 0;
+		while (!q.isEmpty() && settled < WITNESS_SETTLE_LIMIT) {
+			int x = q.removeMin();
+			ctx.settle(x);
+			settled++;
+			double dx = ctx.getDist(x);
+			if (dx > maxDist) break;
+			for (int i = 0; i < out[x].size(); i++) {
+				int e = out[x].get(i);
+				int y = edgeTo[e];
+				if (y == v || contracted[y]) continue;
+				double d = dx + edgeLength[e];
+				if (!ctx.isSettled(y) && d < ctx.getDist(y)) {
+					ctx.update(y, d, e);
+					q.insertOrDecrease(y, d);
+				}
+			}
+		}
+	}
+
+	/*
+	 *  Add the edge from -> to, or shorten the existing one between the same
+	 *  vertices.  Keeps at most one edge per ordered pair.
+	 */
+	private void addOrImprove(int from, int to, double length, int a, int b,
+							  IntList[] out, IntList[] in)
+	{
+		for (int i = 0; i < out[from].size(); i++) {
+			int e = out[from].get(i);
+			if (edgeTo[e] == to) {
+				if (length < edgeLength[e]) {
+					superseded[e] = true;
+					int id = newEdge(from, to, length, a, b);
+					out[from].set(i, id);
+					in[to].set(in[to].indexOf(e), id);
+				}
+				return;
+			}
+		}
+		int id = newEdge(from, to, length, a, b);
+		out[from].add(id);
+		in[to].add(id);
+	}
+
+	private int newEdge(int from, int to, double length, int a, int b)
+	{
+		if (numEdgeIds == edgeFrom.length) {
+			int cap = edgeFrom.length * 2;
+			edgeFrom = Arrays.copyOf(edgeFrom, cap);
+			edgeTo = Arrays.copyOf(edgeTo, cap);
+			edgeLength = Arrays.copyOf(edgeLength, cap);
+			childA = Arrays.copyOf(childA, cap);
+			childB = Arrays.copyOf(childB, cap);
+			superseded = Arrays.copyOf(superseded, cap);
+		}
+		edgeFrom[numEdgeIds] = from;
+		edgeTo[numEdgeIds] = to;
+		edgeLength[numEdgeIds] = length;
+		childA[numEdgeIds] = a;
+		childB[numEdgeIds] = b;
+		return numEdgeIds++;
+	}
+
+	/*
+	 *  A growable list of ints
+	 */
+	private static class IntList {
+		private int[] data = new int[4];
+		private int size = 0;
+
+		int size() { return size; }
+		int get(int i) { return data[i]; }
+		void set(int i, int value) { data[i] = value; }
+		int removeLast() { return data[--size]; }
+
+		void add(int value) {
+			if (size == data.length) data = Arrays.copyOf(data, size * 2);
+			data[size++] = value;
+		}
+
+		int indexOf(int value) {
+			for (int i = 0; i < size; i++) {
+				if (data[i] == value) return i;
+			}
+			return -1;
+		}
+	}
+
+	public static void main(String[] args)
+	{
+		String file = args.length > 0 ? args[0] : "data/maps/san_diego.map";
+		MapGraph map = new MapGraph();
+		System.out.print("Loading " + file + "...");
+		GraphLoader.loadRoadMap(file, map);
+		System.out.println("DONE.");
+
+		long t0 = System.nanoTime();
+		ContractionHierarchy ch = new ContractionHierarchy(map);
+		long t1 = System.nanoTime();
+		System.out.println("Preprocessing: " + (t1 - t0) / 1000000 + " ms, "
+				+ ch.getNumShortcuts() + " shortcuts");
+
+		//Compare settled vertices with Dijkstra on random queries
+		List<GeographicPoint> vertices = new ArrayList<GeographicPoint>(map.getVertices());
+		Random rand = new Random(7);
+		int queries = 200;
+		long[] settled = new long[2];
+		for (int i = 0; i < queries; i++) {
+			GeographicPoint start = vertices.get(rand.nextInt(vertices.size()));
+			GeographicPoint goal = vertices.get(rand.nextInt(vertices.size()));
+			ch.graph.dijkstra(start, goal, (x) -> settled[0]++);
+			ch.query(start, goal, (x) -> settled[1]++);
+		}
+		System.out.println("Average settled vertices per query: Dijkstra " + settled[0] / queries
+				+ ", CH " + settled[1] / queries);
+	}
+}
@@ -0,0 +1,159 @@
+package roadgraph;
+
+import java.util.Arrays;
+
+/**
+ * An array based d-ary min heap of vertex ids.  Arity 2 is the classic
+ * binary heap; arity 4 makes the heap shallower and keeps the children of
+ * a slot next to each other in memory, which usually wins for the many
+ * decrease-key operations of road network searches.
+ *
+ * The heap keeps the position of every queued id so decreaseKey and
+ * contains are O(1) lookups plus an O(log n) sift.
+ *
+ */
+public class DaryHeap implements IndexedPriorityQueue {
+	private final int arity;
+	private int size;
+	private int[] heap;			//heap slot -> id
+	private double[] keys;		//heap slot -> priority of the id in that slot
+	private int[] position;		//id -> heap slot, or -1 if not queued
+
+	/**
+	 * Create an empty heap
+	 * @param arity The number of children per slot, at least 2
+	 * @param capacity The expected largest id + 1.  The heap grows if needed.
+	 */
+	public DaryHeap(int arity, int capacity)
+	{
+		if (arity < 2) throw new IllegalArgumentException("arity must be at least 2");
+		this.arity = arity;
+		capacity = Math.max(capacity, 1);
+		size = 0;
+		heap = new int[capacity];
+		keys = new double[capacity];
+		position = new int[capacity];
+		Arrays.fill(position, -1);
+	}
+
+	public void clear()
+	{
+		for (int i = 0; i < size; i++) {
+			position[heap[i]] = -1;
+		}
+		size = 0;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean contains(int id)
+	{
+		return id < position.length && position[id] >= 0;
+	}
+
+	public double getPriority(int id)
+	{
+		return keys[position[id]];
+	}
+
+	public void insert(int id, double priority)
+	{
+		ensureCapacity(id);
+		heap[size] = id;
+		keys[size] = priority;
+		position[id] = size;
+		siftUp(size++);
+	}
+
+	public void decreaseKey(int id, double priority)
+	{
+		int slot = position[id];
+		keys[slot] = priority;
+		siftUp(slot);
+	}
+
+	public int peek()
+	{
+		return heap[0];
+	}
+
+	public int removeMin()
+	{
+		int min = heap[0];
+		position[min] = -1;
+		size--;
+		if (size > 0) {
+			move(size, 0);
+			siftDown(0);
+		}
+		return min;
+	}
+
+	/*
+	 *  Move the entry in slot from into slot to
+	 */
+	private void move(int from, int to)
+	{
+		heap[to] = heap[from];
+		keys[to] = keys[from];
+		position[heap[to]] = to;
+	}
+
+	private void siftUp(int slot)
+	{
+		int id = heap[slot];
+		double key = keys[slot];
+		while (slot > 0) {
+			int parent = (slot - 1) / arity;
+			if (keys[parent] <= key) break;
+			move(parent, slot);
+			slot = parent;
+		}
+		heap[slot] = id;
+		keys[slot] = key;
+		position[id] = slot;
+	}
+
+	private void siftDown(int slot)
+	{
+		int id = heap[slot];
+		double key = keys[slot];
+		while (true) {
+			int first = slot * arity + 1;
+			if (first >= size) break;
+			//Find the smallest child
+			int last = Math.min(first + arity, size);
+			int best = first;
+			for (int c = first + 1; c < last; c++) {
+				if (keys[c] < keys[best]) best = c;
+			}
+			if (keys[best] >= key) break;
+			move(best, slot);
+			slot = best;
+		}
+		heap[slot] = id;
+		keys[slot] = key;
+		position[id] = slot;
+	}
+
+	private void ensureCapacity(int id)
+	{
+		if (id >= position.length) {
+			int old = position.length;
+			int cap = Math.max(id + 1, old * 2);
+			position = Arrays.copyOf(position, cap);
+			Arrays.fill(position, old, cap, -1);
+			//The heap never holds more entries than there are ids
+			heap = Arrays.copyOf(heap, cap);
+			keys = Arrays.copyOf(keys, cap);
+		}
+	}
+}
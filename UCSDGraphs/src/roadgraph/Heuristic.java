@@ -0,0 +1,34 @@
+package roadgraph;
+
+/**
+ * A lower bound on the road distance between two nodes, used by A* to
+ * decide which node to expand next.  It must never overestimate the
+ * shortest path length, or A* may return a longer path.
+ *
+ */
+public interface Heuristic {
+
+	/** The straight line distance, which is what aStarSearch uses by default */
+	public static final Heuristic STRAIGHT_LINE =
+			(node, goal) -> node.getLoc().distance(goal.getLoc());
+
+	/**
+	 * Estimate the length of the shortest path from node to goal
+	 * @param node The node being queued
+	 * @param goal The goal of the search
+	 * @return A lower bound on the distance from node to goal, in km
+	 */
+	public double estimate(MapNode node, MapNode goal);
+
+	/**
+	 * Whether the estimates are still lower bounds on a graph, which may
+	 * have changed since the heuristic was built.  Searches refuse to use
+	 * a heuristic that is not.
+	 * @param map The graph being searched
+	 * @return true unless the heuristic knows it is out of date for map
+	 */
+	public default boolean isValidFor(MapGraph map)
+	{
+		return true;
+	}
+}
@@ -0,0 +1,87 @@
+package roadgraph;
+
+/**
+ * A min priority queue of int vertex ids with double priorities.
+ * Each id is in the queue at most once and its priority is stored in the
+ * queue, so a shorter distance found later is applied with decreaseKey
+ * instead of pushing a duplicate entry.
+ *
+ * Ids are expected to be small non negative ints (vertex ids); the queue
+ * grows to fit the largest id it has seen.
+ *
+ */
+public interface IndexedPriorityQueue {
+
+	/**
+	 * Remove every entry.  Cost is proportional to the number of entries,
+	 * not to the largest id ever seen.
+	 */
+	public void clear();
+
+	/**
+	 * @return true if the queue has no entries
+	 */
+	public boolean isEmpty();
+
+	/**
+	 * @return The number of entries in the queue
+	 */
+	public int size();
+
+	/**
+	 * @param id The vertex id
+	 * @return true if id is currently in the queue
+	 */
+	public boolean contains(int id);
+
+	/**
+	 * @param id The vertex id, which must be in the queue
+	 * @return The priority id was queued with
+	 */
+	public double getPriority(int id);
+
+	/**
+	 * Add id with the given priority.
+	 * @param id The vertex id, which must not already be in the queue
+	 * @param priority The priority of id
+	 */
+	public void insert(int id, double priority);
+
+	/**
+	 * Lower the priority of an entry.
+	 * @param id The vertex id, which must be in the queue
+	 * @param priority The new priority, no larger than the current one
+	 */
+	public void decreaseKey(int id, double priority);
+
+	/**
+	 * @return The id with the smallest priority.  The queue must not be empty.
+	 */
+	public int peek();
+
+	/**
+	 * Remove the id with the smallest priority.
+	 * @return The removed id.  The queue must not be empty.
+	 */
+	public int removeMin();
+
+	/**
+	 * Insert id if it is not queued, otherwise lower its priority if the
+	 * new one is smaller.  This is the relax step of Dijkstra and A*.
+	 * @param id The vertex id
+	 * @param priority The candidate priority
+	 * @return true if the queue changed
+	 */
+	public default boolean insertOrDecrease(int id, double priority)
+	{
+		if (!contains(id)) {
+			insert(id, priority);
+			return true;
+		}
+		if (priority < getPriority(id)) {
+			decreaseKey(id, priority);
+			return true;
+		}
+		return false;
+	}
+}
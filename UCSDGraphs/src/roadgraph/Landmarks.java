@@ -0,0 +1,379 @@
+package roadgraph;
+
+import java.util.*;
+import geography.GeographicPoint;
+import util.GraphLoader;
+
+/**
+ * The ALT heuristic (A*, Landmarks, Triangle inequality).
+ *
+ * A few landmark vertices are chosen and the road distances from every
+ * landmark to every vertex and from every vertex to every landmark are
+ * precomputed.  By the triangle inequality, for any landmark L
+ *   d(v, t) >= d(v, L) - d(t, L)   and   d(v, t) >= d(L, t) - d(L, v)
+ * and the heuristic is the largest of these bounds.  Unlike the straight
+ * line distance it follows the actual roads, so A* settles far fewer nodes.
+ *
+ * The tables are indexed by node id, so a Landmarks object only works with
+ * the MapGraph (or a CSRGraph of it) that it was built from.  It survives
+ * road closures and removals on that MapGraph, but must be rebuilt after
+ * other changes; MapGraph's searches check isValidFor.
+ *
+ */
+public class Landmarks implements Heuristic {
+
+	/** How the landmarks are chosen */
+	public enum Selection {
+		/** Each landmark is the vertex farthest from the ones already chosen */
+		FARTHEST,
+		/** Goldberg and Werneck's "avoid": pick a region the current landmarks cover badly */
+		AVOID,
+		/** Split the map into equal angle sectors around its centre and take the outermost vertex of each */
+		PLANAR
+	}
+
+	private final int numLandmarks;
+	private final int[] landmarks;
+	// Distance tables, [v * numLandmarks + i] for vertex v and landmark i
+	private final double[] fromLandmark;	//d(L_i, v)
+	private final double[] toLandmark;		//d(v, L_i)
+
+	// The graph the tables were computed on, and its version then
+	private final MapGraph source;
+	private final long sourceVersion;
+
+	/**
+	 * Choose landmarks for a map and precompute the distance tables
+	 * @param map The loaded map.  It is not changed.
+	 * @param count The number of landmarks, usually 4 to 16
+	 * @param selection How to choose the landmarks
+	 */
+	public Landmarks(MapGraph map, int count, Selection selection)
+	{
+		this(new CSRGraph(map), count, selection);
+	}
+
+	/**
+	 * Choose landmarks for a graph and precompute the distance tables
+	 * @param graph The graph
+	 * @param count The number of landmarks, usually 4 to 16
+	 * @param selection How to choose the landmarks
+	 */
+	public Landmarks(CSRGraph graph, int count, Selection selection)
+	{
+		source = graph.source;
+		sourceVersion = graph.sourceVersion;
+		int n = graph.getNumVertices();
+		numLandmarks = Math.max(0, Math.min(count, n));
+		landmarks = new int[numLandmarks];
+		fromLandmark = new double[n * numLandmarks];
+		toLandmark = new double[n * numLandmarks];
+
+		//The backward searches run over the transposed graph
+		int[] revOffsets = new int[n+1];
+		int[] revTargets = new int[graph.getNumEdges()];
+		double[] revLengths = new double[graph.getNumEdges()];
+		transpose(graph, revOffsets, revTargets, revLengths);
+
+		Random rand = new Random(n);
+		boolean[] chosen = new boolean[n];
+		int[] planar = selection == Selection.PLANAR ? planarCandidates(graph, numLandmarks) : null;
+		int[] parent = new int[n];
+		int[] order = new int[n];
+
+		for (int i = 0; i < numLandmarks; i++) {
+			int next = -1;
+			if (selection == Selection.PLANAR && i < planar.length) {
+				next = planar[i];
+			}
+			else if (selection == Selection.AVOID) {
+				next = avoid(graph, i, rand.nextInt(n), chosen, parent, order);
+			}
+			if (next < 0 || chosen[next]) {
+				next = farthest(n, i, rand.nextInt(n), chosen, graph);
+			}
+			chosen[next] = true;
+			landmarks[i] = next;
+
+			double[] from = shortestDistances(n, graph.offsets, graph.targets, graph.lengths, next, null, null);
+			double[] to = shortestDistances(n, revOffsets, revTargets, revLengths, next, null, null);
+			for (int v = 0; v < n; v++) {
+				fromLandmark[v * numLandmarks + i] = from[v];
+				toLandmark[v * numLandmarks + i] = to[v];
+			}
+		}
+	}
+
+	/**
+	 * @return The node ids of the landmarks
+	 */
+	public int[] getLandmarks()
+	{
+		return landmarks.clone();
+	}
+
+	/**
+	 * The tables are indexed by node id, so they only mean anything on
+	 * the graph they were computed on.  Removing or closing roads only
+	 * makes paths longer, so on that graph they stay lower bounds until
+	 * roads or vertices are added or vertices are removed.
+	 * @param map The graph being searched
+	 * @return true if map is the graph the tables were computed on and it
+	 *   has had no change since that could make a path shorter
+	 */
+	@Override
+	public boolean isValidFor(MapGraph map)
+	{
+		return map == source && source.getShortenedVersion() <= sourceVersion;
+	}
+
+	public double estimate(MapNode node, MapNode goal)
+	{
+		return estimate(node.getId(), goal.getId());
+	}
+
+	/**
+	 * The ALT lower bound on the distance between two node ids
+	 * @param v The node being queued
+	 * @param t The goal
+	 * @return A lower bound on d(v, t)
+	 */
+	public double estimate(int v, int t)
+	{
+		double best = 0.0;
+		int vi = v * numLandmarks;
+		int ti = t * numLandmarks;
+		for (int i = 0; i < numLandmarks; i++) {
+			//Unreachable landmarks give infinity - infinity = NaN, which never wins
+			double a = toLandmark[vi + i] - toLandmark[ti + i];
+			double b = fromLandmark[ti + i] - fromLandmark[vi + i];
+			if (a > best) best = a;
+			if (b > best) best = b;
+		}
+		return best;
+	}
+
+	/*
+	 *  The vertex whose distance to the closest chosen landmark is largest.
+	 *  The first landmark is the vertex farthest from a random vertex.
+	 *  Landmarks that can not reach a vertex are ignored for it, otherwise
+	 *  every vertex off a one way street would look infinitely far away.
+	 */
+	private int farthest(int n, int numChosen, int randomStart, boolean[] chosen, CSRGraph graph)
+	{
+		double[] first = numChosen == 0 ?
+				shortestDistances(n, graph.offsets, graph.targets, graph.lengths, randomStart, null, null) : null;
+		int best = -1;
+		double bestDist = -1.0;
+		for (int v = 0; v < n; v++) {
+			if (chosen[v]) continue;
+			double d;
+			if (numChosen == 0) {
+				d = first[v];
+			}
+			else {
+				d = Double.POSITIVE_INFINITY;
+				for (int i = 0; i < numChosen; i++) {
+					double di = fromLandmark[v * numLandmarks + i];
+					if (di < d) d = di;
+				}
+			}
+			if (d == Double.POSITIVE_INFINITY) d = 0.0;
+			if (d > bestDist) {
+				bestDist = d;
+				best = v;
+			}
+		}
+		return best;
+	}
+
+	/*
+	 *  Avoid: grow a shortest path tree from root and weigh each vertex by how
+	 *  much the current landmarks underestimate its distance from root.
+	 *  Subtrees that already contain a landmark weigh nothing.  Walk down
+	 *  from root into the heaviest subtree; the leaf reached is the new landmark.
+	 */
+	private int avoid(CSRGraph graph, int numChosen, int root, boolean[] chosen,
+					  int[] parent, int[] order)
+	{
+		int n = graph.getNumVertices();
+		double[] dist = shortestDistances(n, graph.offsets, graph.targets, graph.lengths, root, parent, order);
+		double[] size = new double[n];
+		boolean[] hasLandmark = new boolean[n];
+		int[] bestChild = new int[n];
+		Arrays.fill(bestChild, -1);
+		int reached = order[n-1] < 0 ? countReached(order) : n;
+
+		//Children settle after their parents, so walk the settle order backwards
+		for (int k = reached - 1; k >= 0; k--) {
+			int v = order[k];
+			if (numChosen > 0) {
+				size[v] += dist[v] - estimate(root, v);
+			}
+			else {
+				size[v] += dist[v];
+			}
+			hasLandmark[v] |= chosen[v];
+			if (hasLandmark[v]) size[v] = 0.0;
+			int p = parent[v];
+			if (p >= 0 && p != v) {
+				size[p] += size[v];
+				hasLandmark[p] |= hasLandmark[v];
+				if (bestChild[p] < 0 || size[v] > size[bestChild[p]]) {
+					bestChild[p] = v;
+				}
+			}
+		}
+		int v = root;
+		while (bestChild[v] >= 0 && size[bestChild[v]] > 0.0) {
+			v = bestChild[v];
+		}
+		return v == root ? -1 : v;
+	}
+
+	private static int countReached(int[] order)
+	{
+		int k = 0;
+		while (k < order.length && order[k] >= 0) k++;
+		return k;
+	}
+
+	/*
+	 *  Planar: split the map into count equal angle sectors around the
+	 *  centre of its bounding box and take the vertex of each sector that
+	 *  is farthest from the centre
+	 */
+	private static int[] planarCandidates(CSRGraph graph, int count)
+	{
+		int n = graph.getNumVertices();
+		double minLat = Double.POSITIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
+		double minLon = Double.POSITIVE_INFINITY, maxLon = Double.NEGATIVE_INFINITY;
+		for (int v = 0; v < n; v++) {
+			minLat = Math.min(minLat, graph.lat[v]);
+			maxLat = Math.max(maxLat, graph.lat[v]);
+			minLon = Math.min(minLon, graph.lon[v]);
+			maxLon = Math.max(maxLon, graph.lon[v]);
+		}
+		double cLat = (minLat + maxLat) / 2;
+		double cLon = (minLon + maxLon) / 2;
+
+		int[] best = new int[count];
+		double[] bestDist = new double[count];
+		Arrays.fill(best, -1);
+		for (int v = 0; v < n; v++) {
+			double angle = Math.atan2(graph.lon[v] - cLon, graph.lat[v] - cLat) + Math.PI;
+			int sector = Math.min(count - 1, (int)(angle / (2 * Math.PI) * count));
+			double d = GeographicPoint.getDist(cLat, cLon, graph.lat[v], graph.lon[v]);
+			if (best[sector] < 0 || d > bestDist[sector]) {
+				best[sector] = v;
+				bestDist[sector] = d;
+			}
+		}
+		//Empty sectors are filled in by the caller with the farthest strategy
+		return best;
+	}
+
+	private static void transpose(CSRGraph graph, int[] revOffsets, int[] revTargets, double[] revLengths)
+	{
+		int n = graph.getNumVertices();
+		for (int e = 0; e < graph.targets.length; e++) {
+			revOffsets[graph.targets[e] + 1]++;
+		}
+		for (int v = 0; v < n; v++) {
+			revOffsets[v+1] += revOffsets[v];
+		}
+		int[] fill = Arrays.copyOf(revOffsets, n);
+		for (int v = 0; v < n; v++) {
+			for (int e = graph.offsets[v]; e < graph.offsets[v+1]; e++) {
+				int slot = fill[graph.targets[e]]++;
+				revTargets[slot] = v;
+				revLengths[slot] = graph.lengths[e];
+			}
+		}
+	}
+
+	/*
+	 *  Full Dijkstra from source.  Fills parent and the settle order (padded
+	 *  with -1) when they are not null.
+	 */
+	private static double[] shortestDistances(int n, int[] offsets, int[] targets, double[] lengths,
+											  int source, int[] parent, int[] order)
+	{
+		double[] dist = new double[n];
+		Arrays.fill(dist, Double.POSITIVE_INFINITY);
+		if (parent != null) Arrays.fill(parent, -1);
+		if (order != null) Arrays.fill(order, -1);
+		boolean[] settled = new boolean[n];
+		DaryHeap q = new DaryHeap(4, n);
+		dist[source] = 0.0;
+		if (parent != null) parent[source] = source;
+		q.insert(source, 0.0);
+		int count = 0;
+		while (!q.isEmpty()) {
+			int v = q.removeMin();
+			settled[v] = true;
+			if (order != null) order[count] = v;
+			count++;
+			for (int e = offsets[v]; e < offsets[v+1]; e++) {
+				int w = targets[e];
+				double d = dist[v] + lengths[e];
+				if (!settled[w] && d < dist[w]) {
+					dist[w] = d;
+					if (parent != null) parent[w] = v;
+					q.insertOrDecrease(w, d);
+				}
+			}
+		}
+		return dist;
+	}
+
+	/**
+	 * Report comparing the nodes settled by Dijkstra, A* with the straight
+	 * line heuristic and A* with each landmark strategy on random queries.
+	 */
+	public static void main(String[] args)
+	{
+		String[] files = args.length > 0 ? args : new String[] {"data/maps/utc.map", "data/maps/san_diego.map"};
+		int numLandmarks = 8;
+		int queries = 300;
+		for (String file : files) {
+			MapGraph map = new MapGraph();
+			GraphLoader.loadRoadMap(file, map);
+			List<GeographicPoint> vertices = new ArrayList<GeographicPoint>(map.getVertices());
+			Random rand = new Random(3);
+			GeographicPoint[][] pairs = new GeographicPoint[queries][];
+			for (int i = 0; i < queries; i++) {
+				pairs[i] = new GeographicPoint[] {vertices.get(rand.nextInt(vertices.size())),
+						vertices.get(rand.nextInt(vertices.size()))};
+			}
+
+			System.out.println(file + ": " + map.getNumVertices() + " intersections, "
+					+ queries + " random queries, " + numLandmarks + " landmarks");
+			System.out.println(String.format("  %-22s %14s %12s", "heuristic", "settled/query", "setup ms"));
+			report(map, pairs, "none (Dijkstra)", null, 0);
+			report(map, pairs, "straight line", Heuristic.STRAIGHT_LINE, 0);
+			for (Selection sel : Selection.values()) {
+				long t0 = System.nanoTime();
+				Landmarks alt = new Landmarks(map, numLandmarks, sel);
+				long setup = System.nanoTime() - t0;
+				report(map, pairs, "ALT " + sel.name().toLowerCase(), alt, setup);
+			}
+		}
+	}
+
+	private static void report(MapGraph map, GeographicPoint[][] pairs, String name,
+							   Heuristic heuristic, long setupNanos)
+	{
+		long[] settled = new long[1];
+		for (GeographicPoint[] pair : pairs) {
+			if (heuristic == null) {
+				map.dijkstra(pair[0], pair[1], (x) -> settled[0]++);
+			}
+			else {
+				map.aStarSearch(pair[0], pair[1], heuristic, (x) -> settled[0]++);
+			}
+		}
+		System.out.println(String.format("  %-22s %14.1f %12.1f", name,
+				(double)settled[0] / pairs.length, setupNanos / 1e6));
+	}
+}
@@ -0,0 +1,159 @@
+package roadgraph;
+
+import geography.GeographicPoint;
+
+/**
+ * One change to a MapGraph, applied with MapGraph.apply.  Changes come
+ * from a change log (GraphLoader.loadChangeLog) or from the difference
+ * between two versions of a .map file (GraphLoader.diffRoadMaps).
+ *
+ * toString() gives the change log line for the change, e.g.
+ * <pre>
+ *   close_edge 32.8648 -117.2285 32.8654 -117.2283
+ *   add_edge 32.8648 -117.2285 32.8654 -117.2283 "Gilman Dr" secondary
+ * </pre>
+ *
+ */
+public class MapChange {
+	/** What a change does.  The change log names are the lower case names. */
+	public enum Kind {
+		/** Add an intersection */
+		ADD_VERTEX,
+		/** Remove an intersection and every road at it */
+		REMOVE_VERTEX,
+		/** Add a road, or replace the road between the same two intersections */
+		ADD_EDGE,
+		/** Remove a road for good */
+		REMOVE_EDGE,
+		/** Take a road out of the graph until it is reopened */
+		CLOSE_EDGE,
+		/** Put a closed road back */
+		REOPEN_EDGE,
+		/** Change the type of a road */
+		SET_ROAD_TYPE
+	}
+
+	private final Kind kind;
+	private final GeographicPoint from;
+	private final GeographicPoint to;		//null for vertex changes
+	private final String roadName;			//only for ADD_EDGE
+	private final String roadType;			//only for ADD_EDGE and SET_ROAD_TYPE
+
+	private MapChange(Kind kind, GeographicPoint from, GeographicPoint to,
+					  String roadName, String roadType)
+	{
+		if (from == null || (to == null && kind != Kind.ADD_VERTEX && kind != Kind.REMOVE_VERTEX)) {
+			throw new IllegalArgumentException("Missing location for " + kind);
+		}
+		this.kind = kind;
+		this.from = from;
+		this.to = to;
+		this.roadName = roadName;
+		this.roadType = roadType;
+	}
+
+	/**
+	 * @param location The intersection to add
+	 * @return The change
+	 */
+	public static MapChange addVertex(GeographicPoint location)
+	{
+		return new MapChange(Kind.ADD_VERTEX, location, null, null, null);
+	}
+
+	/**
+	 * @param location The intersection to remove
+	 * @return The change
+	 */
+	public static MapChange removeVertex(GeographicPoint location)
+	{
+		return new MapChange(Kind.REMOVE_VERTEX, location, null, null, null);
+	}
+
+	/**
+	 * @param from The start of the road
+	 * @param to The end of the road
+	 * @param roadName The name of the road
+	 * @param roadType The type of the road
+	 * @return The change
+	 */
+	public static MapChange addEdge(GeographicPoint from, GeographicPoint to,
+									String roadName, String roadType)
+	{
+		if (roadName == null || roadType == null) throw new IllegalArgumentException();
+		return new MapChange(Kind.ADD_EDGE, from, to, roadName, roadType);
+	}
+
+	/**
+	 * @param from The start of the road
+	 * @param to The end of the road
+	 * @return The change
+	 */
+	public static MapChange removeEdge(GeographicPoint from, GeographicPoint to)
+	{
+		return new MapChange(Kind.REMOVE_EDGE, from, to, null, null);
+	}
+
+	/**
+	 * @param from The start of the road
+	 * @param to The end of the road
+	 * @return The change
+	 */
+	public static MapChange closeEdge(GeographicPoint from, GeographicPoint to)
+	{
+		return new MapChange(Kind.CLOSE_EDGE, from, to, null, null);
+	}
+
+	/**
+	 * @param from The start of the road
+	 * @param to The end of the road
+	 * @return The change
+	 */
+	public static MapChange reopenEdge(GeographicPoint from, GeographicPoint to)
+	{
+		return new MapChange(Kind.REOPEN_EDGE, from, to, null, null);
+	}
+
+	/**
+	 * @param from The start of the road
+	 * @param to The end of the road
+	 * @param roadType The new type of the road
+	 * @return The change
+	 */
+	public static MapChange setRoadType(GeographicPoint from, GeographicPoint to, String roadType)
+	{
+		if (roadType == null) throw new IllegalArgumentException();
+		return new MapChange(Kind.SET_ROAD_TYPE, from, to, null, roadType);
+	}
+
+	/** @return What the change does */
+	public Kind getKind() { return kind; }
+	/** @return The intersection, or the start of the road */
+	public GeographicPoint getFrom() { return from; }
+	/** @return The end of the road, or null for a change to an intersection */
+	public GeographicPoint getTo() { return to; }
+	/** @return The road name of an ADD_EDGE, otherwise null */
+	public String getRoadName() { return roadName; }
+	/** @return The road type of an ADD_EDGE or SET_ROAD_TYPE, otherwise null */
+	public String getRoadType() { return roadType; }
+
+	/**
+	 * @return The change log line for this change
+	 */
+	@Override
+	public String toString()
+	{
+		StringBuilder line = new StringBuilder(kind.name().toLowerCase());
+		line.append(' ').append(from.getX()).append(' ').append(from.getY());
+		if (to != null) {
+			line.append(' ').append(to.getX()).append(' ').append(to.getY());
+		}
+		if (roadName != null) {
+			line.append(" \"").append(roadName).append('"');
+		}
+		if (roadType != null) {
+			line.append(' ').append(roadType);
+		}
+		return line.toString();
+	}
+}
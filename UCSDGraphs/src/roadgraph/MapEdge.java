@@ -8,6 +8,8 @@ public class MapEdge {
 	private GeographicPoint start;
 	private GeographicPoint end;
 	private double length;
+	private int startId = -1; //Ids of the end nodes in their graph, -1 if not in one
+	private int endId = -1;
 	
 	public MapEdge(GeographicPoint s, GeographicPoint e, String n, String t, double l){
 		this.name = n;
@@ -17,6 +19,12 @@ public class MapEdge {
 		this.length = l;
 	}
 	
+	MapEdge(MapNode s, MapNode e, String n, String t, double l){
+		this(s.getLoc(), e.getLoc(), n, t, l);
+		this.startId = s.getId();
+		this.endId = e.getId();
+	}
+	
 	public GeographicPoint getStart(){
 		return start;
 	}
@@ -25,10 +33,34 @@ public class MapEdge {
 		return end;
 	}
 	
+	public int getStartId(){
+		return startId;
+	}
+	
+	public int getEndId(){
+		return endId;
+	}
+	
+	void setStartId(int id){
+		this.startId = id;
+	}
+	
+	void setEndId(int id){
+		this.endId = id;
+	}
+	
 	public double getLength(){
 		return length;
 	}
 	
+	public String getRoadName(){
+		return name;
+	}
+	
+	public String getRoadType(){
+		return type;
+	}
+	
 	public String toString(){
 		return ("Map Ege Info | Name: " + name + "| Type: " + type + "| Start: " + start.toString() + 
 				"| End: " + end.toString() + "| Length: " + length);
@@ -8,8 +8,16 @@
 package roadgraph;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.Consumer;
+import java.util.function.IntFunction;
 import geography.GeographicPoint;
+import geography.PointIndex;
 import util.GraphLoader;
 
 /**
@@ -20,15 +28,29 @@ import util.GraphLoader;
  *
  */
 public class MapGraph {
-	private HashMap<GeographicPoint, MapNode> Map;		
+	private PointIndex index;		//Location -> node id, on fixed point coordinates
+	private ArrayList<MapNode> nodes;		//Nodes indexed by their id
+	private SearchContextPool contexts;	//Per-query search state, so searches can run concurrently
+	private IntFunction<GeographicPoint> locations;	//Node id -> location, resolved into each SearchResult as it is built
+	private List<SearchListener> listeners;	//Told the stats of every search
+	private List<MapEdge> closedEdges;	//Taken out by closeEdge, until reopenEdge
+	
+	// Bumped by changes, see getVersion()
+	private long version;
+	private long topologyVersion;
+	private long shortenedVersion;
 
 	/** 
 	 * Create a new empty MapGraph 
 	 */	
 	public MapGraph()
 	{
-		//Initialize hashMap
-		Map = new HashMap<GeographicPoint, MapNode>();
+		index = new PointIndex();
+		nodes = new ArrayList<MapNode>();
+		contexts = new SearchContextPool();
+		locations = (id) -> nodes.get(id).getLoc();
+		listeners = new CopyOnWriteArrayList<SearchListener>();
+		closedEdges = new ArrayList<MapEdge>();
 	}
 	
 	/**
@@ -37,8 +59,7 @@ public class MapGraph {
 	 */
 	public int getNumVertices()
 	{
-		//Returns size of graph map
-		return Map.size();
+		return nodes.size();
 	}
 	
 	/**
@@ -47,8 +68,67 @@ public class MapGraph {
 	 */
 	public Set<GeographicPoint> getVertices()
 	{	
-		//Returns the keySet for the graph map i.e. the geographic points for the vertices
-		return Map.keySet();
+		//A read only view of the node locations, in id order
+		return new AbstractSet<GeographicPoint>() {
+			@Override
+			public Iterator<GeographicPoint> iterator()
+			{
+				Iterator<MapNode> it = nodes.iterator();
+				return new Iterator<GeographicPoint>() {
+					public boolean hasNext() { return it.hasNext(); }
+					public GeographicPoint next() { return it.next().getLoc(); }
+				};
+			}
+			
+			@Override
+			public boolean contains(Object o)
+			{
+				return o instanceof GeographicPoint && getNode((GeographicPoint)o) != null;
+			}
+			
+			@Override
+			public int size()
+			{
+				return nodes.size();
+			}
+		};
+	}
+	
+	/**
+	 * Register a listener that is given the SearchStats of every search
+	 * run on this graph from now on, e.g. a SearchMetrics registry
+	 * @param listener The listener to add
+	 */
+	public void addSearchListener(SearchListener listener)
+	{
+		if (listener == null) throw new IllegalArgumentException();
+		listeners.add(listener);
+	}
+	
+	/**
+	 * Stop telling a listener about searches
+	 * @param listener The listener to remove
+	 */
+	public void removeSearchListener(SearchListener listener)
+	{
+		listeners.remove(listener);
+	}
+	
+	/*
+	 *  Returns the node stored at a location, or null if there is none
+	 */
+	MapNode getNode(GeographicPoint location)
+	{
+		int id = index.get(location);
+		return id < 0 ? null : nodes.get(id);
+	}
+	
+	/*
+	 *  Returns the node with the given id.  Ids run from 0 to getNumVertices()-1
+	 */
+	MapNode getNode(int id)
+	{
+		return nodes.get(id);
 	}
 	
 	/**
@@ -59,11 +139,9 @@ public class MapGraph {
 	{
 		//Returns total number of edges in graph. Accumulates number of out Edges for each node
 		int numEdges = 0;	
-		for(GeographicPoint key : Map.keySet()){
-			numEdges += Map.get(key).getNumEdges();
+		for(MapNode node : nodes){
+			numEdges += node.getNumEdges();
 		}
-		if (numEdges == 0) 
-			System.out.println("No edges in Map Graph");
 		return numEdges;
 	}
 	
@@ -79,9 +157,11 @@ public class MapGraph {
 		if(location == null){
 			System.out.println("Error in location parameter");
 		}
-		else if(!Map.containsKey(location)){ 
-			//Adds location to map if map doesn't already contain it
-			Map.put(location,new MapNode(location));
+		else if(index.getOrAdd(location) == nodes.size()){ 
+			//Adds location to map if map doesn't already contain it. Ids are handed out densely, by the index
+			MapNode node = new MapNode(location, nodes.size());
+			nodes.add(node);
+			changed(true, true);
 			return true; //Returns true if added
 		}	
 		return false; //Returns false if null (with error msg) or if map already has location
@@ -102,9 +182,228 @@ public class MapGraph {
 	public void addEdge(GeographicPoint from, GeographicPoint to, String roadName,
 			String roadType, double length) throws IllegalArgumentException {
 		//throw error if either locations are in map
-		if (!Map.containsKey(from) || !Map.containsKey(to) || from == null || to == null) throw new IllegalArgumentException();
-		//Add out bound edge to map node in graph at 'from' location
-		Map.get(from).addPath(to, roadName, roadType);
+		MapNode fromNode = getNode(from);
+		MapNode toNode = getNode(to);
+		if (fromNode == null || toNode == null) throw new IllegalArgumentException();
+		//Add out bound edge to map node in graph at 'from' location, and the reverse link at 'to'
+		MapEdge edge = fromNode.addPath(toNode, roadName, roadType);
+		toNode.addInEdge(edge);
+		changed(true, true);
+	}
+	
+	/**
+	 * Remove an intersection and every road to or from it, including
+	 * closed ones.  The node with the highest id takes over the id of the
+	 * removed one, so ids stay 0 .. getNumVertices()-1.
+	 * @param location The intersection to remove
+	 * @return true if it was removed, false if it was not in the graph
+	 */
+	public boolean removeVertex(GeographicPoint location)
+	{
+		MapNode node = getNode(location);
+		if (node == null) return false;
+		for (MapEdge edge : new ArrayList<MapEdge>(node.getEdges())) {
+			nodes.get(edge.getEndId()).removeInEdge(node);
+		}
+		for (MapEdge edge : new ArrayList<MapEdge>(node.getInEdges())) {
+			nodes.get(edge.getStartId()).removePath(node);
+		}
+		GeographicPoint loc = node.getLoc();
+		closedEdges.removeIf(edge -> edge.getStart() == loc || edge.getEnd() == loc);
+		
+		index.remove(loc);
+		MapNode last = nodes.remove(nodes.size() - 1);
+		if (last != node) {
+			last.setId(node.getId());
+			nodes.set(node.getId(), last);
+			index.put(last.getLoc(), node.getId());
+		}
+		//Ids have moved, so tables indexed by id are out of date as well
+		changed(true, true);
+		return true;
+	}
+	
+	/**
+	 * Remove the road from one intersection to another for good
+	 * @param from The start of the road
+	 * @param to The end of the road
+	 * @return true if it was removed, false if there is no such road
+	 */
+	public boolean removeEdge(GeographicPoint from, GeographicPoint to)
+	{
+		MapEdge edge = takeOutEdge(from, to);
+		return edge != null;
+	}
+	
+	/**
+	 * Close the road from one intersection to another.  Searches no longer
+	 * use it until it is reopened.  Closing a two way road takes a call for
+	 * each direction.
+	 * @param from The start of the road
+	 * @param to The end of the road
+	 * @return true if it was closed, false if there is no such open road
+	 */
+	public boolean closeEdge(GeographicPoint from, GeographicPoint to)
+	{
+		MapEdge edge = takeOutEdge(from, to);
+		if (edge == null) return false;
+		closedEdges.add(edge);
+		return true;
+	}
+	
+	/**
+	 * Reopen a road closed with closeEdge
+	 * @param from The start of the road
+	 * @param to The end of the road
+	 * @return true if it was reopened, false if it was not closed
+	 */
+	public boolean reopenEdge(GeographicPoint from, GeographicPoint to)
+	{
+		MapNode fromNode = getNode(from);
+		MapNode toNode = getNode(to);
+		if (fromNode == null || toNode == null) return false;
+		for (Iterator<MapEdge> it = closedEdges.iterator(); it.hasNext(); ) {
+			MapEdge edge = it.next();
+			if (edge.getStart() == fromNode.getLoc() && edge.getEnd() == toNode.getLoc()) {
+				it.remove();
+				addEdge(fromNode.getLoc(), toNode.getLoc(), edge.getRoadName(), edge.getRoadType(),
+						edge.getLength());
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Change the type of the road from one intersection to another
+	 * @param from The start of the road
+	 * @param to The end of the road
+	 * @param roadType The new type
+	 * @return true if it was changed, false if there is no such open road
+	 */
+	public boolean setRoadType(GeographicPoint from, GeographicPoint to, String roadType)
+	{
+		if (roadType == null) throw new IllegalArgumentException();
+		MapNode fromNode = getNode(from);
+		MapNode toNode = getNode(to);
+		MapEdge edge = fromNode == null || toNode == null ? null : fromNode.getEdgeTo(toNode);
+		if (edge == null) return false;
+		//Replacing the edge keeps its place among the node's edges
+		toNode.addInEdge(fromNode.addPath(toNode, edge.getRoadName(), roadType));
+		//The lengths are the same, so only copies of the road data are out of date
+		changed(false, false);
+		return true;
+	}
+	
+	/**
+	 * Apply one change
+	 * @param change The change
+	 * @return true if the graph changed, false if the change did not apply,
+	 *   e.g. it removes a road that is not there
+	 * @throws IllegalArgumentException If an ADD_EDGE joins intersections
+	 *   that are not in the graph
+	 */
+	public boolean apply(MapChange change)
+	{
+		GeographicPoint from = change.getFrom();
+		GeographicPoint to = change.getTo();
+		switch (change.getKind()) {
+		case ADD_VERTEX:
+			return addVertex(from);
+		case REMOVE_VERTEX:
+			return removeVertex(from);
+		case ADD_EDGE:
+			addEdge(from, to, change.getRoadName(), change.getRoadType(), from.distance(to));
+			return true;
+		case REMOVE_EDGE:
+			return removeEdge(from, to);
+		case CLOSE_EDGE:
+			return closeEdge(from, to);
+		case REOPEN_EDGE:
+			return reopenEdge(from, to);
+		default:
+			return setRoadType(from, to, change.getRoadType());
+		}
+	}
+	
+	/**
+	 * Apply changes in order, e.g. from GraphLoader.loadChangeLog or
+	 * GraphLoader.diffRoadMaps
+	 * @param changes The changes
+	 * @return The number of changes that changed the graph
+	 */
+	public int applyChanges(List<MapChange> changes)
+	{
+		int applied = 0;
+		for (MapChange change : changes) {
+			if (apply(change)) applied++;
+		}
+		return applied;
+	}
+	
+	/**
+	 * The version of the graph, which goes up with every change to it.
+	 * Anything derived from the graph can remember the version it was built
+	 * at and compare it with these to see whether it is out of date:
+	 * <ul>
+	 * <li>getVersion() changes with every change, including road types.
+	 *   A copy of all the road data, like a CSRGraph, is out of date.</li>
+	 * <li>getTopologyVersion() changes when vertices or edges are added
+	 *   or removed.  Shortest paths may have changed.</li>
+	 * <li>getShortenedVersion() changes when a change could make a path
+	 *   shorter, or moves vertex ids: when vertices or edges are added,
+	 *   edges reopened or vertices removed.  Removing or closing edges only
+	 *   makes paths longer, so lower bounds like Landmarks stay valid.</li>
+	 * </ul>
+	 * Changes must not run at the same time as searches.
+	 * @return The version of the last change
+	 */
+	public long getVersion()
+	{
+		return version;
+	}
+	
+	/**
+	 * @return The version of the last change to the vertices or edges.
+	 *   See getVersion().
+	 */
+	public long getTopologyVersion()
+	{
+		return topologyVersion;
+	}
+	
+	/**
+	 * @return The version of the last change that could make a path
+	 *   shorter.  See getVersion().
+	 */
+	public long getShortenedVersion()
+	{
+		return shortenedVersion;
+	}
+	
+	/*
+	 *  Take the edge from -> to out of the graph and return it, or null
+	 */
+	private MapEdge takeOutEdge(GeographicPoint from, GeographicPoint to)
+	{
+		MapNode fromNode = getNode(from);
+		MapNode toNode = getNode(to);
+		if (fromNode == null || toNode == null) return null;
+		MapEdge edge = fromNode.removePath(toNode);
+		if (edge == null) return null;
+		toNode.removeInEdge(fromNode);
+		changed(true, false);
+		return edge;
+	}
+	
+	/*
+	 *  Record a change in the versions
+	 */
+	private void changed(boolean topology, boolean shortened)
+	{
+		version++;
+		if (topology) topologyVersion = version;
+		if (shortened) shortenedVersion = version;
 	}
 	
 	/** Find the path from start to goal using breadth first search
@@ -131,107 +430,177 @@ public class MapGraph {
 	public List<GeographicPoint> bfs(GeographicPoint start, 
 			 					     GeographicPoint goal, Consumer<GeographicPoint> nodeSearched)
 	{
-		//error printout if either start or goal is null
-		if (start == null || goal == null){
-			System.out.println("Error: Start and/or Goal is 'null'. No path exists");
-			return null;			
-		}
-		//ParentMap: key:value pair of node:parent 
-		HashMap<GeographicPoint,GeographicPoint> parentMap = new HashMap<GeographicPoint,GeographicPoint>();
-
-		if(!bfsSearch(start, goal, parentMap,nodeSearched)){
-			System.out.println("No path found");
+		SearchResult result = bfsRoute(start, goal, nodeSearched);
+		return result == null ? null : result.getPath();
+	}
+	
+	/** Find the path from start to goal using breadth first search
+	 * 
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param nodeSearched A hook for visualization.  See assignment instructions for how to use it.
+	 * @return The path with the fewest edges from start to goal, 
+	 *   or null if there is none.
+	 */
+	public SearchResult bfsRoute(GeographicPoint start, 
+								 GeographicPoint goal, Consumer<GeographicPoint> nodeSearched)
+	{
+		return route(start, goal, RouteRequest.Algorithm.BFS, null, nodeSearched);
+	}
+	
+	/*
+	 *  Runs one query on a borrowed context.  Returns null without searching
+	 *  if start or goal is null or not in the graph.
+	 */
+	private SearchResult route(GeographicPoint start, 
+							   GeographicPoint goal, 
+							   RouteRequest.Algorithm algorithm,
+							   Heuristic heuristic,
+							   Consumer<GeographicPoint> nodeSearched)
+	{
+		MapNode startNode = getNode(start);
+		MapNode goalNode = getNode(goal);
+		if (startNode == null || goalNode == null){
 			return null;
 		}
-		else{
-			return constructPath(start, goal, parentMap);
+		//Search state is borrowed for this query only, so concurrent queries don't interfere
+		SearchContext ctx = contexts.acquire(nodes.size());
+		try {
+			return search(startNode, goalNode, algorithm, heuristic, ctx, nodeSearched);
+		}
+		finally {
+			contexts.release(ctx);
+		}
+	}
+	
+	/*
+	 *  Runs one search on a freshly reset ctx, times it and reports its 
+	 *  stats to the listeners.  Returns null if goal can not be reached.
+	 */
+	private SearchResult search(MapNode start, 
+								MapNode goal, 
+								RouteRequest.Algorithm algorithm,
+								Heuristic heuristic,
+								SearchContext ctx,
+								Consumer<GeographicPoint> nodeSearched)
+	{
+		if (algorithm == RouteRequest.Algorithm.A_STAR && heuristic != null && !heuristic.isValidFor(this)) {
+			throw new IllegalStateException("The heuristic was not built for this graph or is out of date for it");
+		}
+		SearchStats stats = new SearchStats(algorithm.name());
+		long t0 = System.nanoTime();
+		switch (algorithm) {
+		case BFS:
+			bfsSearch(start, goal, ctx, nodeSearched, stats);
+			break;
+		case DIJKSTRA:
+			dijkstraSearch(start, goal, ctx, nodeSearched, stats);
+			break;
+		default:
+			aStarSearchAndManage(start, goal, heuristic, ctx, nodeSearched, stats);
+			break;
+		}
+		SearchResult result = stats.found ? constructPath(start, goal, ctx, stats) : null;
+		stats.nanos = System.nanoTime() - t0;
+		searchFinished(stats);
+		return result;
+	}
+	
+	/*
+	 *  Hand the stats of a finished search to every listener
+	 */
+	private void searchFinished(SearchStats stats)
+	{
+		for (SearchListener listener : listeners) {
+			listener.searchFinished(stats);
 		}
 	}
 	
 	/*
-	 *  Actual BFS algorithm to find a path
+	 *  Actual BFS algorithm to find a path.  Distances in ctx are the km 
+	 *  travelled along the BFS tree, so the result has the same lengths 
+	 *  as the weighted searches.
 	 */
-	private boolean bfsSearch(GeographicPoint start, 
-		     GeographicPoint goal, HashMap<GeographicPoint,GeographicPoint> parentMap, Consumer<GeographicPoint> nodeSearched){
-		Set<GeographicPoint> vis = new HashSet<GeographicPoint>();
-		Queue<GeographicPoint> q = new LinkedList<GeographicPoint>();
-		boolean found = false;
-		q.add(start);
-		vis.add(start);
+	private void bfsSearch(MapNode start, 
+						   MapNode goal, 
+						   SearchContext ctx, 
+						   Consumer<GeographicPoint> nodeSearched,
+						   SearchStats stats){
+		//Every node is enqueued at most once, so a plain array is enough
+		int[] q = ctx.getFifo();
+		int head = 0, tail = 0;
+		ctx.update(start.getId(), 0.0, start.getId());
+		q[tail++] = start.getId();
 		
-		while(!q.isEmpty()){
-			GeographicPoint curr = q.remove();
-			if(curr.distance(goal) == 0){ //if current node is the goal
-				found = true;
-				nodeSearched.accept(goal);
+		while(head < tail){
+			MapNode curr = nodes.get(q[head++]);
+			stats.settled++;
+			nodeSearched.accept(curr.getLoc());
+			if(curr == goal){ //if current node is the goal
+				stats.found = true;
 				break;
 			}
-			else{
-				List<GeographicPoint> neighbors = Map.get(curr).getNeighbors();
-
-				for(GeographicPoint n : neighbors){ //iterate through neighbors
-					if(!vis.contains(n)){			//if visited doesn't contain neighbor
-						vis.add(n);					//add to visited set
-						q.add(n);					//enqueue
-						parentMap.put(n, curr); 	//add to parentMap
-						nodeSearched.accept(curr);
-					}
+			double currDist = ctx.getDist(curr.getId());
+			for(MapEdge edge : curr.getEdges()){ //iterate through out-edges
+				int n = edge.getEndId();
+				if(!ctx.isReached(n)){			//if neighbor has not been seen yet
+					ctx.update(n, currDist + edge.getLength(), curr.getId());	//record parent
+					q[tail++] = n;				//enqueue
 				}
 			}
+			stats.relaxed += curr.getNumEdges();
 		}
-		return found;
+		//Every node enqueued is dequeued at most once
+		stats.pushes = tail;
+		stats.pops = head;
 	}
 	
 	/*
-	 *  Returns shortest path found by any search algorithm
+	 *  Returns the shortest path found by any search algorithm, by following
+	 *  the parent ids in ctx back from the goal
 	 */
-	private List<GeographicPoint> constructPath(GeographicPoint start, GeographicPoint goal, 
-			HashMap<GeographicPoint, GeographicPoint> parentMap) {
-		LinkedList<GeographicPoint> path = new LinkedList<GeographicPoint>();
-		GeographicPoint curr = goal;
-		do {
-			//System.out.println("Debugging: current NODE: " + curr.toString());
-			path.addFirst(curr);			//adds node to top of list. Ensure path = start -> goal
-			curr = parentMap.get(curr);
-		} while (curr.distance(start)!=0);	//adds node to top of list. Ensure path = start -> goal
-		path.addFirst(start);
-		return path;
+	private SearchResult constructPath(MapNode start, MapNode goal, SearchContext ctx, SearchStats stats) {
+		return SearchResult.fromParents(ctx, start.getId(), goal.getId(), locations, stats);
 	}
 	
 	/*
-	 *  Initializatino method to initialize Dijkstra & A*star
+	 *  Initialization method to initialize Dijkstra & A*star.
+	 *  ctx was reset when it was acquired, so no per-node work is needed here
 	 */
-	private void initDataStruct(	GeographicPoint start, 
-									GeographicPoint goal, 
-									PriorityQueue<GeographicPoint> q,
-									Set<GeographicPoint> vis){
-		for(GeographicPoint key: Map.keySet())	
-			Map.get(key).initDistance();		//Initialize all nodes to infinity
-		Map.get(start).setDist(0.0);
-		q.add(start);
-		vis.add(start);	
+	private void initDataStruct(	MapNode start, 
+									SearchContext ctx,
+									SearchStats stats){
+		ctx.update(start.getId(), 0.0, start.getId());
+		ctx.getQueue().insert(start.getId(), 0.0);
+		stats.pushes++;
 	}
 	
 	/*
-	 *  Add to parentMap and queue
-	 */
-	private void manageDataStruct(	GeographicPoint curr,
-									Set<GeographicPoint> vis,
-									PriorityQueue<GeographicPoint> q,
-									HashMap<GeographicPoint,GeographicPoint>parentMap,
-									Consumer<GeographicPoint> nodeSearched){
-		List<GeographicPoint> neighbors = Map.get(curr).getNeighbors();
-		vis.add(curr);
-		for(GeographicPoint n : neighbors){ //iterate through neighbors
-			if(!vis.contains(n)){			//if visited doesn't contain neighbor
-				double d = Map.get(curr).getDist() + Map.get(curr).getDistanceTo(n);
-				if (Map.get(n).getDist()>d){
-					Map.get(n).setDist(d);		//set distance var in node to distance from curr to node
-					q.add(n);					//enqueue in priority queue
-					parentMap.put(n, curr); 	//add to parentMap
+	 *  Relax the out-edges of curr into ctx and its queue.  The queue priority
+	 *  is the distance plus the heuristic's estimate to goal, or just the
+	 *  distance when heuristic is null (Dijkstra).
+	 */
+	private void manageDataStruct(	MapNode curr,
+									SearchContext ctx,
+									MapNode goal,
+									Heuristic heuristic,
+									SearchStats stats){
+		IndexedPriorityQueue q = ctx.getQueue();
+		double currDist = ctx.getDist(curr.getId());
+		for(MapEdge edge : curr.getEdges()){ //iterate through out-edges
+			MapNode n = nodes.get(edge.getEndId());
+			if(!ctx.isSettled(n.getId())){			//if neighbor is not settled yet
+				double d = currDist + edge.getLength();
+				if (ctx.getDist(n.getId())>d){
+					ctx.update(n.getId(), d, curr.getId());	//record distance and parent for this query
+					//heuristic is computed once per improvement, not on every comparison
+					double h = heuristic == null ? 0.0 : heuristic.estimate(n, goal);
+					q.insertOrDecrease(n.getId(), d + h);	//decrease-key instead of a duplicate entry
+					stats.pushes++;
 				}
 			}
 		}
+		stats.relaxed += curr.getNumEdges();
 	}
 	
 	/** Find the path from start to goal using Dijkstra's algorithm
@@ -260,56 +629,49 @@ public class MapGraph {
 										  GeographicPoint goal, 
 										  Consumer<GeographicPoint> nodeSearched)
 	{
-		//error printout if either start or goal is null
-		if (start == null || goal == null){
-			System.out.println("Error: Start and/or Goal is 'null'. No path exists");
-			return null;			
-		}
-		//ParentMap: key:value pair of node:parent 
-		HashMap<GeographicPoint,GeographicPoint> parentMap = new HashMap<GeographicPoint,GeographicPoint>();
-
-		if(!dijkstraSearch(start, goal, parentMap, nodeSearched)){
-			System.out.println("No path found");
-			return null;
-		}
-		else{
-			return constructPath(start, goal, parentMap);
-		}
+		SearchResult result = dijkstraRoute(start, goal, nodeSearched);
+		return result == null ? null : result.getPath();
+	}
+	
+	/** Find the path from start to goal using Dijkstra's algorithm
+	 * 
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param nodeSearched A hook for visualization.  See assignment instructions for how to use it.
+	 * @return The shortest path from start to goal, or null if there is none.
+	 */
+	public SearchResult dijkstraRoute(GeographicPoint start, 
+									  GeographicPoint goal, 
+									  Consumer<GeographicPoint> nodeSearched)
+	{
+		return route(start, goal, RouteRequest.Algorithm.DIJKSTRA, null, nodeSearched);
 	}
 	
 	/*
-	 *  The actual dijkstra search algorithm
-	 */
-	private boolean dijkstraSearch(	GeographicPoint start, 
-									GeographicPoint goal, 
-									HashMap<GeographicPoint,GeographicPoint> parentMap, 
-									Consumer<GeographicPoint> nodeSearched){		
-		//Priority Queue compares distance from current geo point to other geographic point. Note edge has to exist
-		PriorityQueue<GeographicPoint> q= new PriorityQueue<GeographicPoint>(10, new Comparator<GeographicPoint>(){
-		    public int compare(GeographicPoint one, GeographicPoint two) {
-		        if (Map.get(one).getDist() < Map.get(two).getDist()) return -1;
-		        if (Map.get(one).getDist() > Map.get(two).getDist()) return 1;
-		        return 0;
-		    }
-		});
-		Set<GeographicPoint> vis = new HashSet<GeographicPoint>();
-		initDataStruct(start,goal,q,vis);
-		int numNodesVis = 0;
-		boolean found = false;
+	 *  The actual dijkstra search algorithm.  Counts its work in stats.
+	 */
+	private void dijkstraSearch(	MapNode start, 
+									MapNode goal, 
+									SearchContext ctx, 
+									Consumer<GeographicPoint> nodeSearched,
+									SearchStats stats){		
+		//Indexed queue keyed by node id, priority = distance from the start
+		IndexedPriorityQueue q = ctx.getQueue();
+		initDataStruct(start,ctx,stats);
 		while(!q.isEmpty()){
-			GeographicPoint curr = q.remove();
-			nodeSearched.accept(curr);
-			numNodesVis++;
-			if(curr.distance(goal) == 0){ //if current node is the goal
-				found = true;
+			MapNode curr = nodes.get(q.removeMin());
+			stats.pops++;
+			ctx.settle(curr.getId());
+			stats.settled++;
+			nodeSearched.accept(curr.getLoc());
+			if(curr == goal){ //if current node is the goal
+				stats.found = true;
 				break;
 			}
 			else{
-				manageDataStruct(curr,vis,q,parentMap,nodeSearched);
+				manageDataStruct(curr,ctx,goal,null,stats);
 			}
 		}
-		System.out.println("Dijkstra| Nodes visited: "+numNodesVis);
-		return found;	
 	}
 
 	/** Find the path from start to goal using A-Star search
@@ -338,58 +700,464 @@ public class MapGraph {
 			GeographicPoint goal, 
 			Consumer<GeographicPoint> nodeSearched)
 	{
+		return aStarSearch(start, goal, Heuristic.STRAIGHT_LINE, nodeSearched);
+	}
+	
+	/** Find the path from start to goal using A-Star search with a 
+	 * custom heuristic, e.g. Landmarks
+	 * 
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param heuristic A lower bound on the remaining distance to goal
+	 * @return The list of intersections that form the shortest path from 
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> aStarSearch(GeographicPoint start, 
+											 GeographicPoint goal, 
+											 Heuristic heuristic) {
+		// Dummy variable for calling the search algorithms
+        Consumer<GeographicPoint> temp = (x) -> {};
+        return aStarSearch(start, goal, heuristic, temp);
+	}
+	
+	/** Find the path from start to goal using A-Star search with a 
+	 * custom heuristic, e.g. Landmarks
+	 * 
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param heuristic A lower bound on the remaining distance to goal
+	 * @param nodeSearched A hook for visualization.  See assignment instructions for how to use it.
+	 * @return The list of intersections that form the shortest path from 
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> aStarSearch(
+			GeographicPoint start, 
+			GeographicPoint goal, 
+			Heuristic heuristic,
+			Consumer<GeographicPoint> nodeSearched)
+	{
+		SearchResult result = aStarRoute(start, goal, heuristic, nodeSearched);
+		return result == null ? null : result.getPath();
+	}
+	
+	/** Find the path from start to goal using A-Star search
+	 * 
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param heuristic A lower bound on the remaining distance to goal, 
+	 *   e.g. Heuristic.STRAIGHT_LINE or Landmarks
+	 * @param nodeSearched A hook for visualization.  See assignment instructions for how to use it.
+	 * @return The shortest path from start to goal, or null if there is none.
+	 */
+	public SearchResult aStarRoute(GeographicPoint start, 
+								   GeographicPoint goal, 
+								   Heuristic heuristic,
+								   Consumer<GeographicPoint> nodeSearched)
+	{
+		return route(start, goal, RouteRequest.Algorithm.A_STAR, heuristic, nodeSearched);
+	}
+
+	/*
+	 *  Actual implementation of the aStar search algorithm.  Counts its 
+	 *  work in stats.
+	 */
+	private void aStarSearchAndManage(MapNode start, 
+									    MapNode goal, 
+									    Heuristic heuristic,
+									    SearchContext ctx, 
+									    Consumer<GeographicPoint> nodeSearched,
+									    SearchStats stats){		
+		//Indexed queue keyed by node id, priority = distance from the start + estimated distance to goal
+		IndexedPriorityQueue q = ctx.getQueue();
+		initDataStruct(start,ctx,stats);			
+		while(!q.isEmpty()){
+			MapNode curr = nodes.get(q.removeMin());
+			stats.pops++;
+			ctx.settle(curr.getId());
+			stats.settled++;
+			nodeSearched.accept(curr.getLoc());
+			if(curr == goal){ //if current node is the goal
+				stats.found = true;
+				break;
+			}
+			else{
+				manageDataStruct(curr,ctx,goal,heuristic,stats);
+			}
+		}
+	}
+	
+	/** Find the path from start to goal using bidirectional Dijkstra
+	 * 
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @return The list of intersections that form the shortest path from 
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> bidirectionalDijkstra(GeographicPoint start, GeographicPoint goal) {
+		// Dummy variable for calling the search algorithms
+        Consumer<GeographicPoint> temp = (x) -> {};
+        return bidirectionalDijkstra(start, goal, temp);
+	}
+	
+	/** Find the path from start to goal using bidirectional Dijkstra.
+	 * One search runs forward from start over out-edges and one runs 
+	 * backward from goal over in-edges until their frontiers meet.
+	 * 
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param nodeSearched A hook for visualization.  It sees the nodes
+	 *   settled by both searches.
+	 * @return The list of intersections that form the shortest path from 
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> bidirectionalDijkstra(GeographicPoint start, 
+													   GeographicPoint goal, 
+													   Consumer<GeographicPoint> nodeSearched)
+	{
+		return bidirectional(start, goal, false, nodeSearched);
+	}
+	
+	/** Find the path from start to goal using bidirectional A-Star search
+	 * 
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @return The list of intersections that form the shortest path from 
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> bidirectionalAStar(GeographicPoint start, GeographicPoint goal) {
+		// Dummy variable for calling the search algorithms
+        Consumer<GeographicPoint> temp = (x) -> {};
+        return bidirectionalAStar(start, goal, temp);
+	}
+	
+	/** Find the path from start to goal using bidirectional A-Star search.
+	 * Both searches use the average potential 
+	 * p(v) = (dist(v, goal) - dist(v, start)) / 2 (forward) and -p(v) 
+	 * (backward), which keeps the two searches consistent with each other
+	 * so the usual bidirectional stopping rule still gives shortest paths.
+	 * 
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param nodeSearched A hook for visualization.  It sees the nodes
+	 *   settled by both searches.
+	 * @return The list of intersections that form the shortest path from 
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> bidirectionalAStar(GeographicPoint start, 
+													GeographicPoint goal, 
+													Consumer<GeographicPoint> nodeSearched)
+	{
+		return bidirectional(start, goal, true, nodeSearched);
+	}
+	
+	/*
+	 *  Shared driver for the bidirectional searches
+	 */
+	private List<GeographicPoint> bidirectional(GeographicPoint start, 
+												GeographicPoint goal, 
+												boolean usePotential,
+												Consumer<GeographicPoint> nodeSearched)
+	{
+		MapNode startNode = getNode(start);
+		MapNode goalNode = getNode(goal);
+		if (startNode == null || goalNode == null){
+			return null;
+		}
+		SearchStats stats = new SearchStats(usePotential ? "BIDIRECTIONAL_A_STAR" : "BIDIRECTIONAL_DIJKSTRA");
+		long t0 = System.nanoTime();
+		//One context per direction
+		SearchContext fwd = contexts.acquire(nodes.size());
+		SearchContext bwd = contexts.acquire(nodes.size());
+		try {
+			if (startNode == goalNode){
+				fwd.update(startNode.getId(), 0.0, startNode.getId());
+				stats.found = true;
+				return constructPath(startNode, goalNode, fwd, stats).getPath();
+			}
+			//meet[0] -> meet[1] is the edge where the best path crosses from the forward to the backward search
+			int[] meet = new int[2];
+			double length = bidirectionalSearch(startNode, goalNode, fwd, bwd, usePotential, nodeSearched, meet, stats);
+			if(!stats.found){
+				return null;
+			}
+			//Count both halves first so the arrays are allocated once
+			int numFwd = 1, numBwd = 1;
+			for (int v = meet[0]; v != startNode.getId(); v = fwd.getParent(v)) numFwd++;
+			for (int v = meet[1]; v != goalNode.getId(); v = bwd.getParent(v)) numBwd++;
+			int[] path = new int[numFwd + numBwd];
+			double[] lengths = new double[path.length];
+			//Forward half: start .. meet[0], filled in from meet[0] backwards
+			int curr = meet[0];
+			for (int i = numFwd - 1; i >= 0; i--) {
+				path[i] = curr;
+				lengths[i] = fwd.getDist(curr);
+				curr = fwd.getParent(curr);
+			}
+			//Backward half: meet[1] .. goal, parents in bwd point towards the goal
+			curr = meet[1];
+			for (int i = numFwd; i < path.length; i++) {
+				path[i] = curr;
+				lengths[i] = length - bwd.getDist(curr);
+				curr = bwd.getParent(curr);
+			}
+			return new SearchResult(path, lengths, locations, stats).getPath();
+		}
+		finally {
+			contexts.release(fwd);
+			contexts.release(bwd);
+			stats.nanos = System.nanoTime() - t0;
+			searchFinished(stats);
+		}
+	}
+	
+	/*
+	 *  The bidirectional search.  Expands whichever side has the smaller queue
+	 *  key and stops once the two smallest keys add up to at least the best
+	 *  path seen so far.  With the average potentials the forward and backward
+	 *  keys are d_f(v) + p(v) and d_b(v) - p(v), so the same test is valid for
+	 *  both variants.  Returns the length of the best path, or infinity if 
+	 *  goal can not be reached.
+	 */
+	private double bidirectionalSearch(MapNode start, 
+										MapNode goal, 
+										SearchContext fwd, 
+										SearchContext bwd,
+										boolean usePotential,
+										Consumer<GeographicPoint> nodeSearched,
+										int[] meet,
+										SearchStats stats){
+		IndexedPriorityQueue qf = fwd.getQueue();
+		IndexedPriorityQueue qb = bwd.getQueue();
+		fwd.update(start.getId(), 0.0, start.getId());
+		qf.insert(start.getId(), potential(start, start, goal, usePotential));
+		bwd.update(goal.getId(), 0.0, goal.getId());
+		qb.insert(goal.getId(), -potential(goal, start, goal, usePotential));
+		stats.pushes += 2;
 		
-		if (start == null || goal == null){
-			System.out.println("Error: Start and/or Goal is 'null'. No path exists");
-			return null;			
+		double best = Double.POSITIVE_INFINITY;
+		while(!qf.isEmpty() && !qb.isEmpty()){
+			double topF = qf.getPriority(qf.peek());
+			double topB = qb.getPriority(qb.peek());
+			if (topF + topB >= best) break;	//no shorter path can be found
+			
+			boolean forward = topF <= topB;
+			SearchContext ctx = forward ? fwd : bwd;
+			SearchContext other = forward ? bwd : fwd;
+			MapNode curr = nodes.get(ctx.getQueue().removeMin());
+			stats.pops++;
+			ctx.settle(curr.getId());
+			stats.settled++;
+			nodeSearched.accept(curr.getLoc());
+			
+			double currDist = ctx.getDist(curr.getId());
+			for(MapEdge edge : forward ? curr.getEdges() : curr.getInEdges()){
+				MapNode n = nodes.get(forward ? edge.getEndId() : edge.getStartId());
+				double d = currDist + edge.getLength();
+				stats.relaxed++;
+				if (!ctx.isSettled(n.getId()) && ctx.getDist(n.getId()) > d){
+					ctx.update(n.getId(), d, curr.getId());
+					double p = potential(n, start, goal, usePotential);
+					ctx.getQueue().insertOrDecrease(n.getId(), forward ? d + p : d - p);
+					stats.pushes++;
+				}
+				//Did this edge connect the two searches with a shorter path?
+				if (other.isReached(n.getId())){
+					double total = d + other.getDist(n.getId());
+					if (total < best){
+						best = total;
+						meet[0] = forward ? curr.getId() : n.getId();
+						meet[1] = forward ? n.getId() : curr.getId();
+					}
+				}
+			}
 		}
-		//ParentMap: key:value pair of node:parent 
-		HashMap<GeographicPoint,GeographicPoint> parentMap = new HashMap<GeographicPoint,GeographicPoint>();
+		stats.found = best < Double.POSITIVE_INFINITY;
+		return best;
+	}
+	
+	/*
+	 *  Forward potential of n: half the straight line distance to goal minus half
+	 *  the straight line distance to start.  Zero when not searching with potentials.
+	 */
+	private static double potential(MapNode n, MapNode start, MapNode goal, boolean usePotential){
+		if (!usePotential) return 0.0;
+		return (n.getLoc().distance(goal.getLoc()) - n.getLoc().distance(start.getLoc())) / 2;
+	}
 
-		if(!aStarSearchAndManage(start, goal, parentMap, nodeSearched)){
-			System.out.println("No path found");
-			return null;
+	/** Compute the shortest path distances from every source to every target.
+	 * Runs one Dijkstra search per source, which stops as soon as all the
+	 * targets are settled.  The searches run in parallel on the common
+	 * ForkJoinPool.
+	 *
+	 * @param sources The starting locations
+	 * @param targets The goal locations
+	 * @return A sources.size() x targets.size() matrix where entry [i][j] is
+	 *   the length in km of the shortest path from sources.get(i) to
+	 *   targets.get(j), or infinity if there is no path or either location
+	 *   is not in the graph.
+	 * @throws IllegalArgumentException If either list is null
+	 */
+	public double[][] distanceMatrix(List<GeographicPoint> sources,
+									 List<GeographicPoint> targets) {
+		return distanceMatrix(sources, targets, ForkJoinPool.commonPool());
+	}
+
+	/** Compute the shortest path distances from every source to every target.
+	 * Runs one Dijkstra search per source, which stops as soon as all the
+	 * targets are settled.  The searches run in parallel on pool.
+	 *
+	 * @param sources The starting locations
+	 * @param targets The goal locations
+	 * @param pool The pool that runs the searches
+	 * @return A sources.size() x targets.size() matrix where entry [i][j] is
+	 *   the length in km of the shortest path from sources.get(i) to
+	 *   targets.get(j), or infinity if there is no path or either location
+	 *   is not in the graph.
+	 * @throws IllegalArgumentException If either list or the pool is null
+	 */
+	public double[][] distanceMatrix(List<GeographicPoint> sources,
+									 List<GeographicPoint> targets,
+									 ForkJoinPool pool) {
+		if (sources == null || targets == null || pool == null) throw new IllegalArgumentException();
+		//Resolve the targets once. Every search only reads these
+		int[] targetIds = new int[targets.size()];
+		boolean[] isTarget = new boolean[nodes.size()];
+		int numTargets = 0;		//distinct targets that are in the graph
+		for (int j = 0; j < targetIds.length; j++) {
+			MapNode n = getNode(targets.get(j));
+			targetIds[j] = n == null ? -1 : n.getId();
+			if (n != null && !isTarget[n.getId()]) {
+				isTarget[n.getId()] = true;
+				numTargets++;
+			}
+		}
+
+		double[][] matrix = new double[sources.size()][];
+		List<ForkJoinTask<?>> rows = new ArrayList<ForkJoinTask<?>>(matrix.length);
+		for (int i = 0; i < matrix.length; i++) {
+			final int row = i;
+			final int remaining = numTargets;
+			rows.add(pool.submit(() -> {
+				matrix[row] = distancesFrom(sources.get(row), targetIds, isTarget, remaining);
+			}));
 		}
-		else{
-			return constructPath(start, goal, parentMap);
+		for (ForkJoinTask<?> row : rows) {
+			row.join();
 		}
+		return matrix;
 	}
 
 	/*
-	 *  Actual implementation of the aStar search algorithm
-	 */
-	private boolean aStarSearchAndManage(GeographicPoint start, 
-									    GeographicPoint goal, 
-									    HashMap<GeographicPoint,GeographicPoint> parentMap, 
-									    Consumer<GeographicPoint> nodeSearched){		
-		//Priority Queue compares distance from current geo point to other geographic point + straight line distance from node to goal. Note edge has to exist
-		PriorityQueue<GeographicPoint> q= new PriorityQueue<GeographicPoint>(10, new Comparator<GeographicPoint>(){
-		    public int compare(GeographicPoint one, GeographicPoint two) {
-		        if (Map.get(one).getDist()+one.distance(goal) < Map.get(two).getDist()+two.distance(goal)) return -1;
-		        if (Map.get(one).getDist()+one.distance(goal) > Map.get(two).getDist()+two.distance(goal)) return 1;
-		        return 0;
-		    }
-		});
-		Set<GeographicPoint> vis = new HashSet<GeographicPoint>();
-		initDataStruct(start,goal,q,vis);			
-		int numNodesVis = 0;
-		boolean found = false;
-		while(!q.isEmpty()){
-			GeographicPoint curr = q.remove();
-			nodeSearched.accept(curr);
-			numNodesVis++;
-			if(curr.distance(goal) == 0){ //if current node is the goal
-				found = true;
-				break;
+	 *  One row of the distance matrix: a Dijkstra search from source that
+	 *  stops once the remaining targets are all settled
+	 */
+	private double[] distancesFrom(GeographicPoint source, int[] targetIds,
+								   boolean[] isTarget, int remaining) {
+		double[] row = new double[targetIds.length];
+		Arrays.fill(row, Double.POSITIVE_INFINITY);
+		MapNode start = getNode(source);
+		if (start == null) return row;
+
+		SearchStats stats = new SearchStats("DISTANCE_MATRIX");
+		long t0 = System.nanoTime();
+		SearchContext ctx = contexts.acquire(nodes.size());
+		try {
+			IndexedPriorityQueue q = ctx.getQueue();
+			initDataStruct(start, ctx, stats);
+			while (remaining > 0 && !q.isEmpty()) {
+				MapNode curr = nodes.get(q.removeMin());
+				stats.pops++;
+				ctx.settle(curr.getId());
+				stats.settled++;
+				if (isTarget[curr.getId()]) {
+					remaining--;
+				}
+				manageDataStruct(curr, ctx, null, null, stats);
 			}
-			else{
-				manageDataStruct(curr,vis,q,parentMap,nodeSearched);
+			stats.found = remaining == 0;
+			//Every reached target is settled here, so its distance is final
+			for (int j = 0; j < targetIds.length; j++) {
+				if (targetIds[j] >= 0) {
+					row[j] = ctx.getDist(targetIds[j]);
+				}
 			}
+			return row;
+		}
+		finally {
+			contexts.release(ctx);
+			stats.nanos = System.nanoTime() - t0;
+			searchFinished(stats);
 		}
-		System.out.println("A*Star\t| Nodes visited: "+numNodesVis);		
-		return found;	
 	}
-	
+
+	/** Answer a batch of route queries in parallel on the common ForkJoinPool.
+	 *
+	 * @param requests The queries to answer
+	 * @return The result of each query, in the same order as requests.
+	 *   An entry is null if there is no path or a location is not in the graph.
+	 * @throws IllegalArgumentException If requests or any request is null
+	 */
+	public List<SearchResult> routeAll(List<RouteRequest> requests) {
+		return routeAll(requests, ForkJoinPool.commonPool());
+	}
+
+	/** Answer a batch of route queries in parallel.  The requests are split
+	 * into a few chunks per core and each chunk runs as one task on executor,
+	 * reusing one SearchContext for all of its queries.  No visualization
+	 * hook is called; the SearchListeners get the stats of every query.
+	 *
+	 * @param requests The queries to answer
+	 * @param executor Runs the chunks, e.g. a fixed size thread pool
+	 * @return The result of each query, in the same order as requests.
+	 *   An entry is null if there is no path or a location is not in the graph.
+	 * @throws IllegalArgumentException If requests, executor or any request is null
+	 */
+	public List<SearchResult> routeAll(List<RouteRequest> requests, Executor executor) {
+		if (requests == null || executor == null || requests.contains(null)) throw new IllegalArgumentException();
+		//Copy so the tasks never see a list the caller changes
+		RouteRequest[] batch = requests.toArray(new RouteRequest[requests.size()]);
+		SearchResult[] results = new SearchResult[batch.length];
+
+		int numChunks = Math.min(batch.length, 4 * Runtime.getRuntime().availableProcessors());
+		List<CompletableFuture<Void>> chunks = new ArrayList<CompletableFuture<Void>>(numChunks);
+		for (int c = 0; c < numChunks; c++) {
+			final int from = (int)((long)batch.length * c / numChunks);
+			final int to = (int)((long)batch.length * (c + 1) / numChunks);
+			chunks.add(CompletableFuture.runAsync(() -> {
+				SearchContext ctx = contexts.acquire(nodes.size());
+				try {
+					for (int i = from; i < to; i++) {
+						ctx.reset(nodes.size());
+						results[i] = route(batch[i], ctx);
+					}
+				}
+				finally {
+					contexts.release(ctx);
+				}
+			}, executor));
+		}
+		try {
+			CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[numChunks])).join();
+		}
+		catch (CompletionException e) {
+			//Rethrow what the failed query threw rather than the wrapper
+			if (e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+			throw e;
+		}
+		return Arrays.asList(results);
+	}
+
+	/*
+	 *  Answer one query of routeAll with a freshly reset ctx, without
+	 *  calling a visualization hook
+	 */
+	private SearchResult route(RouteRequest request, SearchContext ctx) {
+		MapNode startNode = getNode(request.getStart());
+		MapNode goalNode = getNode(request.getGoal());
+		if (startNode == null || goalNode == null) return null;
+		return search(startNode, goalNode, request.getAlgorithm(), Heuristic.STRAIGHT_LINE, ctx, (x) -> {});
+	}
+
 	public static void main(String[] args)
 	{
 		System.out.print("Making a new map...");
@@ -414,9 +1182,21 @@ public class MapGraph {
 		GeographicPoint start = new GeographicPoint(32.8648772, -117.2254046);
 		GeographicPoint end = new GeographicPoint(32.8660691, -117.217393);
 
-		List<GeographicPoint> route = theMap.dijkstra(start,end);
-		List<GeographicPoint> route2 = theMap.aStarSearch(start,end);
-		/* 
+		SearchResult route = theMap.dijkstraRoute(start,end,(x) -> {});
+		SearchResult route2 = theMap.aStarRoute(start,end,Heuristic.STRAIGHT_LINE,(x) -> {});
+		System.out.println(route.getStats());
+		System.out.println(route2.getStats());
+
+		// Paths already found do not change with the map.  Removing an
+		// intersection moves the node with the highest id into its id.
+		List<GeographicPoint> path = theMap.dijkstra(start, end);
+		List<GeographicPoint> expected = new ArrayList<GeographicPoint>(path);
+		GeographicPoint removed = path.get(path.size() / 2);
+		theMap.removeVertex(removed);
+		System.out.println("Removed " + removed + " from the path; path unchanged: "
+				+ (path.equals(expected) && route.getPath().equals(expected))
+				+ ", new route found: " + (theMap.dijkstra(start, end) != null));
+		/*
 	    MapGraph simpleTestMap = new MapGraph();
 		GraphLoader.loadRoadMap("data/testdata/simpletest.map", simpleTestMap);
 		
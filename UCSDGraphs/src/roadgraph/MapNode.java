@@ -6,22 +6,24 @@ import geography.GeographicPoint;
 public class MapNode {
 	private GeographicPoint loc;
 	private HashMap<GeographicPoint,MapEdge> adjList; //List of out-Neighbors
-	private double dist;
+	private HashMap<GeographicPoint,MapEdge> inList; //List of in-Neighbors, keyed by the edge's start
+	private int id; //Dense index of this node in its graph. Search state is kept per query, indexed by id
 	
-	public MapNode(GeographicPoint loc){
+	public MapNode(GeographicPoint loc, int id){
 		this.loc = loc;
+		this.id = id;
 		this.adjList = new HashMap<GeographicPoint,MapEdge>();
-		initDistance();
-	}
-	
-	public void initDistance(){
-		this.dist = Double.POSITIVE_INFINITY;
+		this.inList = new HashMap<GeographicPoint,MapEdge>();
 	}
 	
 	public GeographicPoint getLoc(){
 		return loc;
 	}
 	
+	public int getId(){
+		return id;
+	}
+	
 	public List<GeographicPoint> getNeighbors(){
 		//Returns all neighbor locations that share a map edge using this node as a start point
 		List<GeographicPoint> list = new ArrayList<GeographicPoint>();
@@ -30,26 +32,60 @@ public class MapNode {
 		return list;
 	}
 	
-	public int getNumEdges(){
-		return adjList.size();
+	public Collection<MapEdge> getEdges(){
+		//Returns the out-edges of this node. Read only
+		return Collections.unmodifiableCollection(adjList.values());
 	}
 	
-	public void setDist(double d){
-		this.dist = d;
+	public Collection<MapEdge> getInEdges(){
+		//Returns the edges ending at this node, for searches that run backwards. Read only
+		return Collections.unmodifiableCollection(inList.values());
 	}
 	
-	public double getDist(){
-		return this.dist;
+	public int getNumEdges(){
+		return adjList.size();
 	}
 	
 	public double getDistanceTo(GeographicPoint g){
 		return adjList.get(g).getLength();
 	}
 	
-	public void addPath(GeographicPoint other, String name, String type){
-		//Adds a named map edge connecting this node and another node
-		MapEdge mE = new MapEdge(this.loc, other, name, type, this.loc.distance(other));
-		adjList.put(other,mE);
+	public MapEdge addPath(MapNode other, String name, String type){
+		//Adds a named map edge connecting this node and another node. The edge knows both ids, so searches need no lookups
+		MapEdge mE = new MapEdge(this, other, name, type, this.loc.distance(other.getLoc()));
+		adjList.put(other.getLoc(),mE);
 		//System.out.println(mE.toString());
-	}	
+		return mE;
+	}
+	
+	public void addInEdge(MapEdge mE){
+		//Records an edge ending at this node. Replaces an earlier edge from the same start, like addPath does
+		inList.put(mE.getStart(),mE);
+	}
+	
+	MapEdge getEdgeTo(MapNode other){
+		//The out-edge to other, or null if there is none
+		return adjList.get(other.getLoc());
+	}
+	
+	MapEdge removePath(MapNode other){
+		//Removes the out-edge to other and returns it, or null if there was none
+		return adjList.remove(other.getLoc());
+	}
+	
+	void removeInEdge(MapNode other){
+		//Removes the record of the edge from other
+		inList.remove(other.getLoc());
+	}
+	
+	void setId(int id){
+		//Only for MapGraph.removeVertex, which keeps ids dense. Every edge at this node is given the new id too
+		this.id = id;
+		for(MapEdge mE : adjList.values()){
+			mE.setStartId(id);
+		}
+		for(MapEdge mE : inList.values()){
+			mE.setEndId(id);
+		}
+	}
 }
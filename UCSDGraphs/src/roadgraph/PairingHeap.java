@@ -0,0 +1,181 @@
+package roadgraph;
+
+import java.util.Arrays;
+
+/**
+ * A pairing heap of vertex ids, stored in int arrays indexed by id instead
+ * of node objects.  Insert and decreaseKey are O(1) (decreaseKey cuts the
+ * subtree and melds it with the root); removeMin does the usual two pass
+ * pairing of the root's children in amortized O(log n).
+ *
+ */
+public class PairingHeap implements IndexedPriorityQueue {
+	private static final int NONE = -1;
+
+	private int root;
+	private int size;
+	private double[] keys;
+	private int[] child;		//id -> first child
+	private int[] sibling;		//id -> next sibling
+	private int[] prev;			//id -> previous sibling, or parent for a first child
+	private boolean[] queued;
+	private int[] pairs;		//scratch space for removeMin
+
+	/**
+	 * Create an empty heap
+	 * @param capacity The expected largest id + 1.  The heap grows if needed.
+	 */
+	public PairingHeap(int capacity)
+	{
+		capacity = Math.max(capacity, 1);
+		root = NONE;
+		size = 0;
+		keys = new double[capacity];
+		child = new int[capacity];
+		sibling = new int[capacity];
+		prev = new int[capacity];
+		queued = new boolean[capacity];
+		pairs = new int[capacity];
+	}
+
+	public void clear()
+	{
+		//Walk the tree to unmark the queued ids, so clear is O(size)
+		if (root != NONE) {
+			int top = 0;
+			pairs[top++] = root;
+			while (top > 0) {
+				int id = pairs[--top];
+				queued[id] = false;
+				for (int c = child[id]; c != NONE; c = sibling[c]) {
+					pairs[top++] = c;
+				}
+			}
+		}
+		root = NONE;
+		size = 0;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean contains(int id)
+	{
+		return id < queued.length && queued[id];
+	}
+
+	public double getPriority(int id)
+	{
+		return keys[id];
+	}
+
+	public void insert(int id, double priority)
+	{
+		ensureCapacity(id);
+		keys[id] = priority;
+		child[id] = NONE;
+		sibling[id] = NONE;
+		prev[id] = NONE;
+		queued[id] = true;
+		size++;
+		root = (root == NONE) ? id : meld(root, id);
+	}
+
+	public void decreaseKey(int id, double priority)
+	{
+		keys[id] = priority;
+		if (id == root) return;
+		//Cut the subtree rooted at id out of its sibling list
+		int p = prev[id];
+		if (child[p] == id) {
+			child[p] = sibling[id];
+		}
+		else {
+			sibling[p] = sibling[id];
+		}
+		if (sibling[id] != NONE) {
+			prev[sibling[id]] = p;
+		}
+		sibling[id] = NONE;
+		prev[id] = NONE;
+		root = meld(root, id);
+	}
+
+	public int peek()
+	{
+		return root;
+	}
+
+	public int removeMin()
+	{
+		int min = root;
+		queued[min] = false;
+		size--;
+
+		//First pass: meld children pairwise from left to right
+		int count = 0;
+		int c = child[min];
+		while (c != NONE) {
+			int a = c;
+			int b = sibling[a];
+			c = (b == NONE) ? NONE : sibling[b];
+			sibling[a] = NONE;
+			prev[a] = NONE;
+			if (b != NONE) {
+				sibling[b] = NONE;
+				prev[b] = NONE;
+				a = meld(a, b);
+			}
+			pairs[count++] = a;
+		}
+		//Second pass: meld the pairs from right to left
+		int r = NONE;
+		for (int i = count - 1; i >= 0; i--) {
+			r = (r == NONE) ? pairs[i] : meld(pairs[i], r);
+		}
+		root = r;
+		child[min] = NONE;
+		return min;
+	}
+
+	/*
+	 *  Meld two roots and return the new root.  The loser becomes the
+	 *  first child of the winner.
+	 */
+	private int meld(int a, int b)
+	{
+		if (keys[b] < keys[a]) {
+			int t = a;
+			a = b;
+			b = t;
+		}
+		int first = child[a];
+		sibling[b] = first;
+		if (first != NONE) {
+			prev[first] = b;
+		}
+		prev[b] = a;
+		child[a] = b;
+		return a;
+	}
+
+	private void ensureCapacity(int id)
+	{
+		if (id >= queued.length) {
+			int cap = Math.max(id + 1, queued.length * 2);
+			keys = Arrays.copyOf(keys, cap);
+			child = Arrays.copyOf(child, cap);
+			sibling = Arrays.copyOf(sibling, cap);
+			prev = Arrays.copyOf(prev, cap);
+			queued = Arrays.copyOf(queued, cap);
+			pairs = Arrays.copyOf(pairs, cap);
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package roadgraph;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import util.GraphLoader;
+
+/**
+ * Microbenchmark of the priority queues used by shortest path search.
+ * Runs the same random point to point Dijkstra queries on a CSRGraph of each
+ * bundled map with java.util.PriorityQueue (duplicate entries, skipped when
+ * stale) and with each IndexedPriorityQueue, checks that they agree and
+ * prints the time per query.
+ *
+ */
+public class QueueBenchmark {
+	private static final String[] MAPS = {
+		"data/maps/utc.map", "data/maps/san_diego.map", "data/maps/hollywood_large.map"
+	};
+	private static final int QUERIES = 500;
+	private static final int WARMUP_ROUNDS = 3;
+
+	public static void main(String[] args)
+	{
+		for (String file : MAPS) {
+			MapGraph map = new MapGraph();
+			GraphLoader.loadRoadMap(file, map);
+			CSRGraph graph = new CSRGraph(map);
+			int n = graph.getNumVertices();
+
+			Random rand = new Random(42);
+			int[] starts = new int[QUERIES];
+			int[] goals = new int[QUERIES];
+			for (int i = 0; i < QUERIES; i++) {
+				starts[i] = rand.nextInt(n);
+				goals[i] = rand.nextInt(n);
+			}
+
+			System.out.println(file + ": " + n + " vertices, " + graph.getNumEdges()
+					+ " edges, " + QUERIES + " queries");
+			double[] expected = null;
+			String[] names = {"java.util.PriorityQueue", "binary heap", "4-ary heap", "pairing heap"};
+			for (int k = 0; k < names.length; k++) {
+				double[] result = new double[QUERIES];
+				IndexedPriorityQueue queue = k == 0 ? null : newQueue(k, n);
+				long best = Long.MAX_VALUE;
+				for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+					long t0 = System.nanoTime();
+					for (int i = 0; i < QUERIES; i++) {
+						result[i] = k == 0 ? dijkstraPriorityQueue(graph, starts[i], goals[i])
+								: dijkstraIndexed(graph, starts[i], goals[i], queue);
+					}
+					best = Math.min(best, System.nanoTime() - t0);
+				}
+				if (expected == null) {
+					expected = result;
+				}
+				boolean same = java.util.Arrays.equals(expected, result);
+				System.out.printf("  %-24s %8.1f us/query%s%n", names[k],
+						best / 1000.0 / QUERIES, same ? "" : "  (DISTANCES DIFFER)");
+			}
+		}
+	}
+
+	private static IndexedPriorityQueue newQueue(int kind, int n)
+	{
+		if (kind == 1) return new DaryHeap(2, n);
+		if (kind == 2) return new DaryHeap(4, n);
+		return new PairingHeap(n);
+	}
+
+	/*
+	 *  The way MapGraph searched before: a PriorityQueue holding a new
+	 *  entry for every improvement
+	 */
+	private static double dijkstraPriorityQueue(CSRGraph g, int s, int t)
+	{
+		double[] dist = new double[g.getNumVertices()];
+		java.util.Arrays.fill(dist, Double.POSITIVE_INFINITY);
+		boolean[] settled = new boolean[g.getNumVertices()];
+		PriorityQueue<double[]> q = new PriorityQueue<double[]>(
+				(a, b) -> Double.compare(a[0], b[0]));
+		dist[s] = 0.0;
+		q.add(new double[] {0.0, s});
+		while (!q.isEmpty()) {
+			int curr = (int)q.remove()[1];
+			if (settled[curr]) continue;
+			settled[curr] = true;
+			if (curr == t) return dist[t];
+			for (int e = g.offsets[curr]; e < g.offsets[curr+1]; e++) {
+				int n2 = g.targets[e];
+				double d = dist[curr] + g.lengths[e];
+				if (d < dist[n2]) {
+					dist[n2] = d;
+					q.add(new double[] {d, n2});
+				}
+			}
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+
+	private static double dijkstraIndexed(CSRGraph g, int s, int t, IndexedPriorityQueue q)
+	{
+		double[] dist = new double[g.getNumVertices()];
+		java.util.Arrays.fill(dist, Double.POSITIVE_INFINITY);
+		boolean[] settled = new boolean[g.getNumVertices()];
+		q.clear();
+		dist[s] = 0.0;
+		q.insert(s, 0.0);
+		while (!q.isEmpty()) {
+			int curr = q.removeMin();
+			settled[curr] = true;
+			if (curr == t) return dist[t];
+			for (int e = g.offsets[curr]; e < g.offsets[curr+1]; e++) {
+				int n2 = g.targets[e];
+				double d = dist[curr] + g.lengths[e];
+				if (!settled[n2] && d < dist[n2]) {
+					dist[n2] = d;
+					q.insertOrDecrease(n2, d);
+				}
+			}
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+}
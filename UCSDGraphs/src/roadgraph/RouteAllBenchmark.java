@@ -0,0 +1,77 @@
+package roadgraph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import geography.GeographicPoint;
+import util.GraphLoader;
+
+/**
+ * Throughput of MapGraph.routeAll with 1, 2, 4, ... threads up to the
+ * number of cores.  Each run answers the same batch of random Dijkstra
+ * and A* queries, checks that every thread count gives the same path
+ * lengths and prints the queries per second and the speedup over one
+ * thread.
+ *
+ */
+public class RouteAllBenchmark {
+	private static final String[] MAPS = {"data/maps/san_diego.map", "data/maps/hollywood_large.map"};
+	private static final int QUERIES = 2000;
+	private static final int WARMUP_ROUNDS = 2;
+
+	public static void main(String[] args)
+	{
+		int cores = Runtime.getRuntime().availableProcessors();
+		for (String file : MAPS) {
+			MapGraph map = new MapGraph();
+			GraphLoader.loadRoadMap(file, map);
+			List<GeographicPoint> vertices = new ArrayList<GeographicPoint>(map.getVertices());
+
+			Random rand = new Random(42);
+			List<RouteRequest> batch = new ArrayList<RouteRequest>(QUERIES);
+			for (int i = 0; i < QUERIES; i++) {
+				GeographicPoint start = vertices.get(rand.nextInt(vertices.size()));
+				GeographicPoint goal = vertices.get(rand.nextInt(vertices.size()));
+				batch.add(new RouteRequest(start, goal, i % 2 == 0 ?
+						RouteRequest.Algorithm.DIJKSTRA : RouteRequest.Algorithm.A_STAR));
+			}
+
+			System.out.println(file + ": " + map.getNumVertices() + " vertices, "
+					+ QUERIES + " queries, " + cores + " cores");
+			double[] expected = null;
+			double single = 0;
+			for (int threads = 1; threads <= cores; threads = threads < cores ? Math.min(threads * 2, cores) : threads + 1) {
+				ExecutorService pool = Executors.newFixedThreadPool(threads);
+				try {
+					long best = Long.MAX_VALUE;
+					List<SearchResult> results = null;
+					for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+						long t0 = System.nanoTime();
+						results = map.routeAll(batch, pool);
+						best = Math.min(best, System.nanoTime() - t0);
+					}
+					double[] lengths = new double[QUERIES];
+					for (int i = 0; i < QUERIES; i++) {
+						lengths[i] = results.get(i) == null ? -1 : results.get(i).getLength();
+					}
+					if (expected == null) {
+						expected = lengths;
+					}
+					double perSecond = QUERIES / (best / 1e9);
+					if (threads == 1) {
+						single = perSecond;
+					}
+					boolean same = java.util.Arrays.equals(expected, lengths);
+					System.out.printf("  %2d threads %10.0f queries/s  %5.2fx%s%n", threads,
+							perSecond, perSecond / single, same ? "" : "  (LENGTHS DIFFER)");
+				}
+				finally {
+					pool.shutdown();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package roadgraph;
+
+import geography.GeographicPoint;
+
+/**
+ * One query for MapGraph.routeAll: where to start, where to go and which
+ * search to use.
+ *
+ */
+public class RouteRequest {
+	/** The search algorithms a RouteRequest can ask for */
+	public enum Algorithm {
+		/** Breadth first search: fewest road segments */
+		BFS,
+		/** Dijkstra's algorithm: shortest distance */
+		DIJKSTRA,
+		/** A* with the straight line heuristic: shortest distance */
+		A_STAR
+	}
+
+	private final GeographicPoint start;
+	private final GeographicPoint goal;
+	private final Algorithm algorithm;
+
+	/**
+	 * Create a route request
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param algorithm The search to run
+	 * @throws IllegalArgumentException If algorithm is null
+	 */
+	public RouteRequest(GeographicPoint start, GeographicPoint goal, Algorithm algorithm)
+	{
+		if (algorithm == null) throw new IllegalArgumentException();
+		this.start = start;
+		this.goal = goal;
+		this.algorithm = algorithm;
+	}
+
+	/**
+	 * @return The starting location
+	 */
+	public GeographicPoint getStart()
+	{
+		return start;
+	}
+
+	/**
+	 * @return The goal location
+	 */
+	public GeographicPoint getGoal()
+	{
+		return goal;
+	}
+
+	/**
+	 * @return The search to run
+	 */
+	public Algorithm getAlgorithm()
+	{
+		return algorithm;
+	}
+
+	@Override
+	public String toString()
+	{
+		return algorithm + " " + start + " -> " + goal;
+	}
+}
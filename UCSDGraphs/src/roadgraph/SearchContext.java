@@ -0,0 +1,141 @@
+package roadgraph;
+
+import java.util.Arrays;
+
+/**
+ * Per-query state for a shortest path search: tentative distances, parents,
+ * settled flags and the priority queue, indexed by vertex id.
+ *
+ * Each entry is stamped with the generation of the search that wrote it.
+ * Starting a new search just bumps the generation, so any entry with an
+ * older stamp reads as "not reached".  The cost of a reset is therefore
+ * independent of the size of the graph and the arrays are reused from
+ * query to query.  A context must only be used by one search at a time;
+ * see SearchContextPool for sharing contexts between threads.
+ *
+ */
+public class SearchContext {
+	private int generation;
+	private int[] stamp;		//generation that last wrote dist/parent
+	private int[] settledStamp;	//generation that last settled the vertex
+	private double[] dist;
+	private int[] parent;
+	private IndexedPriorityQueue queue;
+	private int[] fifo;			//scratch queue for breadth first search
+
+	/**
+	 * Create a context for graphs with up to capacity vertices.
+	 * It grows automatically if a bigger graph uses it.
+	 * @param capacity The expected number of vertices
+	 */
+	public SearchContext(int capacity)
+	{
+		generation = 0;
+		stamp = new int[capacity];
+		settledStamp = new int[capacity];
+		dist = new double[capacity];
+		parent = new int[capacity];
+		queue = new DaryHeap(4, capacity);
+		fifo = new int[capacity];
+	}
+
+	/**
+	 * Start a new search over a graph with numVertices vertices.
+	 * Every vertex becomes unreached and unsettled.
+	 * @param numVertices The number of vertices in the graph being searched
+	 */
+	public void reset(int numVertices)
+	{
+		if (numVertices > stamp.length) {
+			int size = Math.max(numVertices, stamp.length * 2);
+			stamp = Arrays.copyOf(stamp, size);
+			settledStamp = Arrays.copyOf(settledStamp, size);
+			dist = Arrays.copyOf(dist, size);
+			parent = Arrays.copyOf(parent, size);
+			fifo = new int[size];
+		}
+		generation++;
+		if (generation == Integer.MAX_VALUE) {
+			//Wrapped around: old stamps could look current, so clear them once
+			Arrays.fill(stamp, 0);
+			Arrays.fill(settledStamp, 0);
+			generation = 1;
+		}
+		queue.clear();
+	}
+
+	/**
+	 * @return The priority queue of this search.  It is emptied by reset.
+	 */
+	public IndexedPriorityQueue getQueue()
+	{
+		return queue;
+	}
+
+	/**
+	 * @return An array with room for every vertex, for breadth first 
+	 *   searches to use as their queue.  Its contents are not cleared.
+	 */
+	public int[] getFifo()
+	{
+		return fifo;
+	}
+
+	/**
+	 * @param v The vertex id
+	 * @return The tentative distance to v, or infinity if v was not reached
+	 */
+	public double getDist(int v)
+	{
+		return stamp[v] == generation ? dist[v] : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * @param v The vertex id
+	 * @return The vertex that v was reached from, or -1 if v was not reached
+	 */
+	public int getParent(int v)
+	{
+		return stamp[v] == generation ? parent[v] : -1;
+	}
+
+	/**
+	 * @param v The vertex id
+	 * @return true if v has been reached in the current search
+	 */
+	public boolean isReached(int v)
+	{
+		return stamp[v] == generation;
+	}
+
+	/**
+	 * Record a (better) distance to v and the vertex it was reached from
+	 * @param v The vertex id
+	 * @param d The distance from the start to v
+	 * @param p The vertex v was reached from
+	 */
+	public void update(int v, double d, int p)
+	{
+		stamp[v] = generation;
+		dist[v] = d;
+		parent[v] = p;
+	}
+
+	/**
+	 * @param v The vertex id
+	 * @return true if the distance to v is final in the current search
+	 */
+	public boolean isSettled(int v)
+	{
+		return settledStamp[v] == generation;
+	}
+
+	/**
+	 * Mark the distance to v as final
+	 * @param v The vertex id
+	 */
+	public void settle(int v)
+	{
+		settledStamp[v] = generation;
+	}
+}
@@ -0,0 +1,44 @@
+package roadgraph;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A thread safe pool of SearchContexts.  Each search borrows a context for
+ * its duration and gives it back afterwards, so concurrent searches on one
+ * graph never share state and a busy graph allocates at most one context
+ * per concurrently running search.
+ *
+ */
+public class SearchContextPool {
+	private final ConcurrentLinkedQueue<SearchContext> free;
+
+	/** Create an empty pool */
+	public SearchContextPool()
+	{
+		free = new ConcurrentLinkedQueue<SearchContext>();
+	}
+
+	/**
+	 * Borrow a context that is reset for a graph with numVertices vertices
+	 * @param numVertices The number of vertices in the graph being searched
+	 * @return A context that no other search is using
+	 */
+	public SearchContext acquire(int numVertices)
+	{
+		SearchContext ctx = free.poll();
+		if (ctx == null) {
+			ctx = new SearchContext(numVertices);
+		}
+		ctx.reset(numVertices);
+		return ctx;
+	}
+
+	/**
+	 * Give a context back to the pool.  The caller must not use it afterwards.
+	 * @param ctx The context returned by acquire
+	 */
+	public void release(SearchContext ctx)
+	{
+		free.offer(ctx);
+	}
+}
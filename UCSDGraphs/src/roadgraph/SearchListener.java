@@ -0,0 +1,16 @@
+package roadgraph;
+
+/**
+ * Receives the SearchStats of every search a MapGraph runs, e.g. a
+ * SearchMetrics registry.  Searches can run on several threads at once,
+ * so implementations must be thread safe, and they should be cheap since
+ * they are called on the searching thread.
+ *
+ */
+public interface SearchListener {
+	/**
+	 * Called when a search has finished, whether or not it found a path
+	 * @param stats What the search did.  It is not changed afterwards.
+	 */
+	void searchFinished(SearchStats stats);
+}
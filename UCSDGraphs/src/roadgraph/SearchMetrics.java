@@ -0,0 +1,269 @@
+package roadgraph;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A registry that aggregates the SearchStats of many searches, per
+ * algorithm, into histograms of each counter.  Register it with
+ * MapGraph.addSearchListener and read the percentiles or export
+ * everything as JSON with toJson().
+ *
+ * Recording is lock free, so one registry can be shared by all the
+ * threads searching a graph.
+ *
+ */
+public class SearchMetrics implements SearchListener {
+	/** The counters of SearchStats that are aggregated */
+	public enum Metric {
+		SETTLED, RELAXED, PUSHES, POPS, NANOS
+	}
+
+	private static final double[] EXPORTED_PERCENTILES = {50, 90, 99};
+
+	private final ConcurrentHashMap<String, AlgorithmMetrics> byAlgorithm =
+			new ConcurrentHashMap<String, AlgorithmMetrics>();
+
+	@Override
+	public void searchFinished(SearchStats stats)
+	{
+		AlgorithmMetrics m = byAlgorithm.get(stats.getAlgorithm());
+		if (m == null) {
+			byAlgorithm.putIfAbsent(stats.getAlgorithm(), new AlgorithmMetrics());
+			m = byAlgorithm.get(stats.getAlgorithm());
+		}
+		m.record(stats);
+	}
+
+	/**
+	 * @param algorithm The algorithm name, as in SearchStats.getAlgorithm()
+	 * @return The number of searches recorded for algorithm
+	 */
+	public long getCount(String algorithm)
+	{
+		AlgorithmMetrics m = byAlgorithm.get(algorithm);
+		return m == null ? 0 : m.searches.sum();
+	}
+
+	/**
+	 * @param algorithm The algorithm name, as in SearchStats.getAlgorithm()
+	 * @return The number of recorded searches for algorithm that found a path
+	 */
+	public long getFound(String algorithm)
+	{
+		AlgorithmMetrics m = byAlgorithm.get(algorithm);
+		return m == null ? 0 : m.found.sum();
+	}
+
+	/**
+	 * @param algorithm The algorithm name, as in SearchStats.getAlgorithm()
+	 * @param metric The counter
+	 * @return The histogram of metric over all searches recorded for
+	 *   algorithm, or null if there are none
+	 */
+	public Histogram getHistogram(String algorithm, Metric metric)
+	{
+		AlgorithmMetrics m = byAlgorithm.get(algorithm);
+		return m == null ? null : m.histograms[metric.ordinal()];
+	}
+
+	/** Forget everything recorded so far */
+	public void clear()
+	{
+		byAlgorithm.clear();
+	}
+
+	/**
+	 * Export the registry as a JSON object with one member per algorithm:
+	 * the search and found counts and, for each metric, its count, mean,
+	 * max and 50th, 90th and 99th percentiles.
+	 * @return The JSON text
+	 */
+	public String toJson()
+	{
+		StringBuilder json = new StringBuilder("{");
+		//Sorted so the output is stable
+		Map<String, AlgorithmMetrics> sorted = new TreeMap<String, AlgorithmMetrics>(byAlgorithm);
+		boolean firstAlgorithm = true;
+		for (Map.Entry<String, AlgorithmMetrics> entry : sorted.entrySet()) {
+			if (!firstAlgorithm) json.append(',');
+			firstAlgorithm = false;
+			AlgorithmMetrics m = entry.getValue();
+			appendString(json, entry.getKey());
+			json.append(":{\"searches\":").append(m.searches.sum());
+			json.append(",\"found\":").append(m.found.sum());
+			for (Metric metric : Metric.values()) {
+				Histogram h = m.histograms[metric.ordinal()];
+				json.append(",\"").append(metric.name().toLowerCase()).append("\":{");
+				json.append("\"count\":").append(h.getCount());
+				json.append(",\"mean\":").append(h.getMean());
+				json.append(",\"max\":").append(h.getMax());
+				for (double p : EXPORTED_PERCENTILES) {
+					json.append(",\"p").append((int)p).append("\":").append(h.getPercentile(p));
+				}
+				json.append('}');
+			}
+			json.append('}');
+		}
+		return json.append('}').toString();
+	}
+
+	@Override
+	public String toString()
+	{
+		return toJson();
+	}
+
+	/*
+	 *  Append s as a JSON string literal
+	 */
+	private static void appendString(StringBuilder json, String s)
+	{
+		json.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			}
+			else if (c < 0x20) {
+				json.append(String.format("\\u%04x", (int)c));
+			}
+			else {
+				json.append(c);
+			}
+		}
+		json.append('"');
+	}
+
+	/*
+	 *  The counters and histograms of one algorithm
+	 */
+	private static class AlgorithmMetrics {
+		final LongAdder searches = new LongAdder();
+		final LongAdder found = new LongAdder();
+		final Histogram[] histograms = new Histogram[Metric.values().length];
+
+		AlgorithmMetrics()
+		{
+			for (int i = 0; i < histograms.length; i++) {
+				histograms[i] = new Histogram();
+			}
+		}
+
+		void record(SearchStats stats)
+		{
+			searches.increment();
+			if (stats.isFound()) {
+				found.increment();
+			}
+			histograms[Metric.SETTLED.ordinal()].record(stats.getSettled());
+			histograms[Metric.RELAXED.ordinal()].record(stats.getRelaxed());
+			histograms[Metric.PUSHES.ordinal()].record(stats.getPushes());
+			histograms[Metric.POPS.ordinal()].record(stats.getPops());
+			histograms[Metric.NANOS.ordinal()].record(stats.getNanos());
+		}
+	}
+
+	/**
+	 * A lock free histogram of non-negative longs.  Values below 8 are
+	 * counted exactly; larger values fall into 8 buckets per power of two,
+	 * so percentiles are accurate to within 12.5%.
+	 *
+	 */
+	public static class Histogram {
+		private static final int SUB_BUCKETS = 8;		//buckets per power of two
+		private static final int SUB_BITS = 3;			//log2(SUB_BUCKETS)
+		private static final int NUM_BUCKETS = SUB_BUCKETS + (63 - SUB_BITS) * SUB_BUCKETS;
+
+		private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+		private final LongAdder count = new LongAdder();
+		private final LongAdder sum = new LongAdder();
+		private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+		/**
+		 * Add a value.  Negative values are counted as 0.
+		 * @param value The value to add
+		 */
+		public void record(long value)
+		{
+			value = Math.max(value, 0);
+			buckets.incrementAndGet(bucketOf(value));
+			count.increment();
+			sum.add(value);
+			max.accumulate(value);
+		}
+
+		/**
+		 * @return The number of values recorded
+		 */
+		public long getCount()
+		{
+			return count.sum();
+		}
+
+		/**
+		 * @return The mean of the values recorded, or 0 if there are none
+		 */
+		public double getMean()
+		{
+			long n = count.sum();
+			return n == 0 ? 0.0 : (double)sum.sum() / n;
+		}
+
+		/**
+		 * @return The largest value recorded, or 0 if there are none
+		 */
+		public long getMax()
+		{
+			return max.get();
+		}
+
+		/**
+		 * @param percentile Between 0 and 100
+		 * @return An upper bound on the value below which percentile percent
+		 *   of the recorded values fall, or 0 if there are none
+		 */
+		public long getPercentile(double percentile)
+		{
+			long n = count.sum();
+			if (n == 0) return 0;
+			long rank = Math.max(1, (long)Math.ceil(percentile / 100.0 * n));
+			long seen = 0;
+			for (int b = 0; b < NUM_BUCKETS; b++) {
+				seen += buckets.get(b);
+				if (seen >= rank) {
+					return Math.min(upperBound(b), getMax());
+				}
+			}
+			return getMax();
+		}
+
+		/*
+		 *  Values 0..7 have a bucket each.  Above that the bucket is picked
+		 *  by the position of the highest set bit and the next SUB_BITS bits.
+		 */
+		private static int bucketOf(long value)
+		{
+			if (value < SUB_BUCKETS) return (int)value;
+			int exp = 63 - Long.numberOfLeadingZeros(value);
+			int sub = (int)(value >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+			return SUB_BUCKETS + (exp - SUB_BITS) * SUB_BUCKETS + sub;
+		}
+
+		/*
+		 *  The largest value that falls into bucket b
+		 */
+		private static long upperBound(int b)
+		{
+			if (b < SUB_BUCKETS) return b;
+			int shift = (b - SUB_BUCKETS) / SUB_BUCKETS;
+			long sub = (b - SUB_BUCKETS) % SUB_BUCKETS;
+			long lower = (SUB_BUCKETS + sub) << shift;
+			return lower + (1L << shift) - 1;
+		}
+	}
+}
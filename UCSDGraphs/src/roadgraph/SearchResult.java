@@ -0,0 +1,115 @@
+package roadgraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import geography.GeographicPoint;
+
+/**
+ * The path found by a search, stored as the vertex ids along the path and
+ * the distance travelled from the start to each of them.
+ *
+ * The intersections are looked up once, when the result is built, so
+ * the path stays the same if the map changes afterwards, e.g. when
+ * removing a vertex gives another intersection its id.
+ *
+ */
+public class SearchResult {
+	private final int[] path;				//vertex ids from start to goal
+	private final double[] lengths;			//lengths[i] = km from the start to path[i]
+	private final GeographicPoint[] points;	//points[i] = location of path[i]
+	private final SearchStats stats;
+
+	/*
+	 *  Wraps arrays that the caller has filled in.  They are not copied.
+	 *  The ids are resolved to locations here, while they are still current.
+	 */
+	SearchResult(int[] path, double[] lengths, IntFunction<GeographicPoint> locations,
+				 SearchStats stats)
+	{
+		this.path = path;
+		this.lengths = lengths;
+		this.points = new GeographicPoint[path.length];
+		for (int i = 0; i < path.length; i++) {
+			points[i] = locations.apply(path[i]);
+		}
+		this.stats = stats;
+	}
+
+	/*
+	 *  Builds the result for the path to goal recorded by the parents in ctx.
+	 *  One pass counts the vertices so the arrays are allocated at their
+	 *  final size, a second pass fills them in from the goal backwards.
+	 */
+	static SearchResult fromParents(SearchContext ctx, int start, int goal,
+									IntFunction<GeographicPoint> locations, SearchStats stats)
+	{
+		int count = 1;
+		for (int v = goal; v != start; v = ctx.getParent(v)) {
+			count++;
+		}
+		int[] path = new int[count];
+		double[] lengths = new double[count];
+		int v = goal;
+		for (int i = count - 1; i >= 0; i--) {
+			path[i] = v;
+			lengths[i] = ctx.getDist(v);
+			v = ctx.getParent(v);
+		}
+		return new SearchResult(path, lengths, locations, stats);
+	}
+
+	/**
+	 * @return The number of intersections on the path, including start and goal
+	 */
+	public int size()
+	{
+		return path.length;
+	}
+
+	/**
+	 * @param i The position on the path, 0 for the start
+	 * @return The vertex id of the i-th intersection on the path
+	 */
+	public int getNodeId(int i)
+	{
+		return path[i];
+	}
+
+	/**
+	 * @param i The position on the path, 0 for the start
+	 * @return The length in km of the path from the start to the i-th intersection
+	 */
+	public double getLengthTo(int i)
+	{
+		return lengths[i];
+	}
+
+	/**
+	 * @return The length in km of the whole path
+	 */
+	public double getLength()
+	{
+		return lengths[lengths.length - 1];
+	}
+
+	/**
+	 * @return What the search that found this path did, or null if it 
+	 *   was not measured
+	 */
+	public SearchStats getStats()
+	{
+		return stats;
+	}
+
+	/**
+	 * @return The intersections on the path from start to goal (including
+	 *   both), in a new list that the caller may change.
+	 */
+	public List<GeographicPoint> getPath()
+	{
+		return new ArrayList<GeographicPoint>(Arrays.asList(points));
+	}
+}
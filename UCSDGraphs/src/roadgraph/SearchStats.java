@@ -0,0 +1,93 @@
+package roadgraph;
+
+/**
+ * What one search did: how many nodes it settled, edges it relaxed and
+ * queue operations it made, and how long it took.  A SearchResult carries
+ * the stats of the search that found it, and every search, including
+ * ones that find no path, reports its stats to the graph's
+ * SearchListeners.
+ *
+ * The counters are written by the search while it runs and are read-only
+ * once it has finished.
+ *
+ */
+public class SearchStats {
+	private final String algorithm;
+	boolean found;
+	int settled;		//nodes taken off the queue as final
+	long relaxed;		//out-edges examined from settled nodes
+	long pushes;		//queue inserts and decrease-keys
+	long pops;			//queue removals
+	long nanos;			//wall clock time of the search
+
+	/*
+	 *  Counters start at zero; the search fills them in
+	 */
+	SearchStats(String algorithm)
+	{
+		this.algorithm = algorithm;
+	}
+
+	/**
+	 * @return The name of the search, e.g. "DIJKSTRA" or "A_STAR"
+	 */
+	public String getAlgorithm()
+	{
+		return algorithm;
+	}
+
+	/**
+	 * @return true if the search found a path to the goal
+	 */
+	public boolean isFound()
+	{
+		return found;
+	}
+
+	/**
+	 * @return The number of nodes settled (visited)
+	 */
+	public int getSettled()
+	{
+		return settled;
+	}
+
+	/**
+	 * @return The number of edges examined from settled nodes
+	 */
+	public long getRelaxed()
+	{
+		return relaxed;
+	}
+
+	/**
+	 * @return The number of queue inserts and decrease-keys
+	 */
+	public long getPushes()
+	{
+		return pushes;
+	}
+
+	/**
+	 * @return The number of nodes removed from the queue
+	 */
+	public long getPops()
+	{
+		return pops;
+	}
+
+	/**
+	 * @return The time the search took, in nanoseconds
+	 */
+	public long getNanos()
+	{
+		return nanos;
+	}
+
+	@Override
+	public String toString()
+	{
+		return algorithm + (found ? "" : " (no path)") + ": settled " + settled + ", relaxed " + relaxed
+				+ ", pushes " + pushes + ", pops " + pops + ", " + nanos / 1000 + " us";
+	}
+}
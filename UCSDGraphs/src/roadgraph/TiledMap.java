@@ -0,0 +1,691 @@
+package roadgraph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import geography.GeographicPoint;
+import geography.PointIndex;
+import util.BinaryTables;
+import util.GraphLoader;
+
+/**
+ * A road map split into square tiles of a fixed lat/lon grid, one file per
+ * tile, that is searched without ever being loaded whole.  A tile is read
+ * the first time a search reaches one of its intersections and is kept in
+ * an LRU cache of at most maxTiles tiles, so a route can cross a region
+ * far larger than the heap as long as the tiles around its search frontier
+ * fit.
+ *
+ * An intersection belongs to the tile its location falls in.  A tile holds
+ * its intersections, their out-edges and the boundary nodes: the locations
+ * of the intersections in other tiles that its edges lead to.  A search
+ * that follows an edge to a boundary node continues in that node's tile.
+ *
+ * Searches keep their state only for the intersections they reach, keyed
+ * by location, so a tile can be evicted in the middle of a search and read
+ * again later.  Many threads may search one TiledMap at once.
+ *
+ * Files in the tile directory, all numbers big-endian:
+ * <pre>
+ *   tiles.idx   int magic, int version, double tileDegrees, int numVertices,
+ *               int numEdges, int numTiles, then numTiles times:
+ *               int row, int col, int numVertices
+ *   row_col.tile
+ *     header    int magic, int version, int numVertices, int numEdges,
+ *               int numBoundary, int numStrings
+ *     vertices  double lat[numVertices], double lon[numVertices]
+ *     boundary  double lat[numBoundary], double lon[numBoundary]
+ *     edges     int offsets[numVertices+1], int target[numEdges],
+ *               double length[numEdges], int name[numEdges], int type[numEdges]
+ *     strings   numStrings times: int byteLength, UTF-8 bytes
+ * </pre>
+ * A tile's row and column are floor(lat / tileDegrees) and
+ * floor(lon / tileDegrees).  Edge targets below numVertices are vertices
+ * of the tile; the others are boundary node target - numVertices.
+ *
+ */
+public class TiledMap {
+	private static final int INDEX_MAGIC = 0x55435449;	//"UCTI"
+	private static final int TILE_MAGIC = 0x5543544C;	//"UCTL"
+	/** The version of the file layout written by this class */
+	public static final int VERSION = 1;
+	private static final String INDEX_FILE = "tiles.idx";
+	private static final int TILE_HEADER_BYTES = 6 * 4;
+
+	private final File dir;
+	private final double tileDegrees;
+	private final int numVertices;
+	private final int numEdges;
+	private final HashMap<Long,Integer> tileSizes;		//tile key -> number of vertices
+
+	// The tiles in memory, least recently used first
+	private final LinkedHashMap<Long,Tile> cache;
+	private long tileLoads;
+
+	/*
+	 *  Read the index of a tile directory
+	 */
+	private TiledMap(File dir, final int maxTiles) throws IOException
+	{
+		if (maxTiles < 1) throw new IllegalArgumentException("maxTiles must be at least 1");
+		this.dir = dir;
+		File indexFile = new File(dir, INDEX_FILE);
+		ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(indexFile.toPath()));
+		if (in.capacity() < 32 || in.getInt() != INDEX_MAGIC) {
+			throw new IOException("Not a tiled map: " + indexFile);
+		}
+		int version = in.getInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported tiled map version " + version + " in " + indexFile);
+		}
+		tileDegrees = in.getDouble();
+		numVertices = in.getInt();
+		numEdges = in.getInt();
+		int numTiles = in.getInt();
+		if (!(tileDegrees > 0) || numTiles < 0 || in.remaining() < 12L * numTiles) {
+			throw new IOException("Truncated tiled map: " + indexFile);
+		}
+		tileSizes = new HashMap<Long,Integer>(numTiles * 2);
+		for (int i = 0; i < numTiles; i++) {
+			int row = in.getInt();
+			int col = in.getInt();
+			tileSizes.put(key(row, col), in.getInt());
+		}
+		cache = new LinkedHashMap<Long,Tile>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long,Tile> eldest)
+			{
+				return size() > maxTiles;
+			}
+		};
+	}
+
+	/**
+	 * Open a tile directory.  Only the index is read; tiles are read as
+	 * searches reach them.
+	 * @param dir The directory written by build or write
+	 * @param maxTiles The most tiles to keep in memory at once
+	 * @return The opened map
+	 * @throws IOException If the index can not be read, is not a tiled map
+	 *   index or was written by a different version
+	 */
+	public static TiledMap open(String dir, int maxTiles) throws IOException
+	{
+		return new TiledMap(new File(dir), maxTiles);
+	}
+
+	/**
+	 * Load a text road map and write it as tiles
+	 * @param mapFile The road map in the format read by GraphLoader.loadRoadMap
+	 * @param dir The directory to write the tiles to.  It is created if needed.
+	 * @param tileDegrees The side of a tile, in degrees
+	 * @throws IOException If a tile can not be written
+	 */
+	public static void build(String mapFile, String dir, double tileDegrees) throws IOException
+	{
+		MapGraph map = new MapGraph();
+		GraphLoader.loadRoadMap(mapFile, map);
+		write(map, dir, tileDegrees);
+	}
+
+	/**
+	 * Write a loaded graph as tiles
+	 * @param map The graph
+	 * @param dir The directory to write the tiles to.  It is created if needed.
+	 * @param tileDegrees The side of a tile, in degrees
+	 * @throws IOException If a tile can not be written
+	 */
+	public static void write(MapGraph map, String dir, double tileDegrees) throws IOException
+	{
+		if (!(tileDegrees > 0)) throw new IllegalArgumentException("tileDegrees must be positive");
+		File directory = new File(dir);
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Can not create " + dir);
+		}
+		CSRGraph g = new CSRGraph(map);
+		int n = g.getNumVertices();
+
+		//The vertices of each tile, in id order
+		TreeMap<Long,List<Integer>> tiles = new TreeMap<Long,List<Integer>>();
+		for (int v = 0; v < n; v++) {
+			long key = key(row(g.lat[v], tileDegrees), row(g.lon[v], tileDegrees));
+			List<Integer> vertices = tiles.get(key);
+			if (vertices == null) {
+				vertices = new ArrayList<Integer>();
+				tiles.put(key, vertices);
+			}
+			vertices.add(v);
+		}
+
+		for (Map.Entry<Long,List<Integer>> tile : tiles.entrySet()) {
+			writeTile(g, tile.getValue(), tileFile(directory, tile.getKey()));
+		}
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(new File(directory, INDEX_FILE))))) {
+			out.writeInt(INDEX_MAGIC);
+			out.writeInt(VERSION);
+			out.writeDouble(tileDegrees);
+			out.writeInt(n);
+			out.writeInt(g.getNumEdges());
+			out.writeInt(tiles.size());
+			for (Map.Entry<Long,List<Integer>> tile : tiles.entrySet()) {
+				out.writeInt((int)(tile.getKey() >> 32));
+				out.writeInt((int)(long)tile.getKey());
+				out.writeInt(tile.getValue().size());
+			}
+		}
+	}
+
+	/*
+	 *  Write the vertices of one tile and their out-edges.  Targets in other
+	 *  tiles become boundary nodes, numbered in order of first use.
+	 */
+	private static void writeTile(CSRGraph g, List<Integer> vertices, File file) throws IOException
+	{
+		int n = vertices.size();
+		HashMap<Integer,Integer> inTile = new HashMap<Integer,Integer>(n * 2);	//vertex id -> index in the tile
+		for (int v : vertices) {
+			inTile.put(v, inTile.size());
+		}
+		LinkedHashMap<Integer,Integer> boundary = new LinkedHashMap<Integer,Integer>();
+		LinkedHashMap<String,Integer> table = new LinkedHashMap<String,Integer>();
+		int m = 0;
+		for (int v : vertices) {
+			for (int e = g.offsets[v]; e < g.offsets[v+1]; e++) {
+				int w = g.targets[e];
+				if (!inTile.containsKey(w) && !boundary.containsKey(w)) {
+					boundary.put(w, n + boundary.size());
+				}
+				BinaryTables.intern(table, g.roadNames[e]);
+				BinaryTables.intern(table, g.roadTypes[e]);
+				m++;
+			}
+		}
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+			out.writeInt(TILE_MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(n);
+			out.writeInt(m);
+			out.writeInt(boundary.size());
+			out.writeInt(table.size());
+
+			for (int v : vertices) out.writeDouble(g.lat[v]);
+			for (int v : vertices) out.writeDouble(g.lon[v]);
+			for (int w : boundary.keySet()) out.writeDouble(g.lat[w]);
+			for (int w : boundary.keySet()) out.writeDouble(g.lon[w]);
+
+			int offset = 0;
+			out.writeInt(offset);
+			for (int v : vertices) {
+				offset += g.offsets[v+1] - g.offsets[v];
+				out.writeInt(offset);
+			}
+			for (int v : vertices) {
+				for (int e = g.offsets[v]; e < g.offsets[v+1]; e++) {
+					Integer target = inTile.get(g.targets[e]);
+					out.writeInt(target != null ? target : boundary.get(g.targets[e]));
+				}
+			}
+			for (int v : vertices) {
+				for (int e = g.offsets[v]; e < g.offsets[v+1]; e++) out.writeDouble(g.lengths[e]);
+			}
+			for (int v : vertices) {
+				for (int e = g.offsets[v]; e < g.offsets[v+1]; e++) out.writeInt(table.get(g.roadNames[e]));
+			}
+			for (int v : vertices) {
+				for (int e = g.offsets[v]; e < g.offsets[v+1]; e++) out.writeInt(table.get(g.roadTypes[e]));
+			}
+
+			BinaryTables.writeStrings(table, out);
+		}
+	}
+
+	// The grid row (or column) of a latitude (or longitude)
+	private static int row(double degrees, double tileDegrees)
+	{
+		return (int)Math.floor(degrees / tileDegrees);
+	}
+
+	private static long key(int row, int col)
+	{
+		return ((long)row << 32) | (col & 0xFFFFFFFFL);
+	}
+
+	private static File tileFile(File dir, long key)
+	{
+		return new File(dir, (int)(key >> 32) + "_" + (int)key + ".tile");
+	}
+
+	/**
+	 * @return The number of intersections in the whole map
+	 */
+	public int getNumVertices()
+	{
+		return numVertices;
+	}
+
+	/**
+	 * @return The number of road segments (edges) in the whole map
+	 */
+	public int getNumEdges()
+	{
+		return numEdges;
+	}
+
+	/**
+	 * @return The number of tiles the map is split into
+	 */
+	public int getNumTiles()
+	{
+		return tileSizes.size();
+	}
+
+	/**
+	 * @return The number of tiles in memory now
+	 */
+	public synchronized int getNumCachedTiles()
+	{
+		return cache.size();
+	}
+
+	/**
+	 * @return The number of times a tile has been read from its file,
+	 *   counting reads of tiles that had been evicted
+	 */
+	public synchronized long getTileLoads()
+	{
+		return tileLoads;
+	}
+
+	/*
+	 *  The tile a location falls in, read if it is not cached, or null if
+	 *  the map has no intersections there
+	 */
+	private synchronized Tile tileAt(double lat, double lon)
+	{
+		long key = key(row(lat, tileDegrees), row(lon, tileDegrees));
+		Tile tile = cache.get(key);
+		if (tile == null && tileSizes.containsKey(key)) {
+			try {
+				tile = new Tile(tileFile(dir, key));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			tileLoads++;
+			cache.put(key, tile);
+		}
+		return tile;
+	}
+
+	/**
+	 * Load the intersections inside a region, and the roads between them,
+	 * into a MapGraph, for callers that need a graph they can change.
+	 * Roads that leave the region are left out.
+	 * @param map The graph to load into
+	 * @param south The southern edge of the region
+	 * @param west The western edge of the region
+	 * @param north The northern edge of the region
+	 * @param east The eastern edge of the region
+	 */
+	public void loadRegion(MapGraph map, double south, double west, double north, double east)
+	{
+		List<Tile> tiles = new ArrayList<Tile>();
+		for (int r = row(south, tileDegrees); r <= row(north, tileDegrees); r++) {
+			for (int c = row(west, tileDegrees); c <= row(east, tileDegrees); c++) {
+				if (tileSizes.containsKey(key(r, c))) {
+					tiles.add(tileAt(r * tileDegrees + tileDegrees / 2, c * tileDegrees + tileDegrees / 2));
+				}
+			}
+		}
+		for (Tile tile : tiles) {
+			for (int v = 0; v < tile.numVertices; v++) {
+				if (inside(tile.lat[v], tile.lon[v], south, west, north, east)) {
+					map.addVertex(new GeographicPoint(tile.lat[v], tile.lon[v]));
+				}
+			}
+		}
+		for (Tile tile : tiles) {
+			for (int v = 0; v < tile.numVertices; v++) {
+				if (!inside(tile.lat[v], tile.lon[v], south, west, north, east)) continue;
+				GeographicPoint from = new GeographicPoint(tile.lat[v], tile.lon[v]);
+				for (int e = tile.offsets[v]; e < tile.offsets[v+1]; e++) {
+					double lat = tile.targetLat(e);
+					double lon = tile.targetLon(e);
+					if (inside(lat, lon, south, west, north, east)) {
+						map.addEdge(from, new GeographicPoint(lat, lon), tile.roadNames[e],
+								tile.roadTypes[e], tile.lengths[e]);
+					}
+				}
+			}
+		}
+	}
+
+	private static boolean inside(double lat, double lon, double south, double west,
+								  double north, double east)
+	{
+		return lat >= south && lat <= north && lon >= west && lon <= east;
+	}
+
+	/** Find the path from start to goal using Dijkstra's algorithm
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @return The list of intersections that form the shortest path from
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> dijkstra(GeographicPoint start, GeographicPoint goal) {
+		Consumer<GeographicPoint> temp = (x) -> {};
+		return dijkstra(start, goal, temp);
+	}
+
+	/** Find the path from start to goal using Dijkstra's algorithm
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param nodeSearched A hook for visualization.
+	 * @return The list of intersections that form the shortest path from
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> dijkstra(GeographicPoint start,
+										  GeographicPoint goal,
+										  Consumer<GeographicPoint> nodeSearched)
+	{
+		return shortestPath(start, goal, false, nodeSearched);
+	}
+
+	/** Find the path from start to goal using A-Star search
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @return The list of intersections that form the shortest path from
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> aStarSearch(GeographicPoint start, GeographicPoint goal) {
+		Consumer<GeographicPoint> temp = (x) -> {};
+		return aStarSearch(start, goal, temp);
+	}
+
+	/** Find the path from start to goal using A-Star search
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param nodeSearched A hook for visualization.
+	 * @return The list of intersections that form the shortest path from
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> aStarSearch(GeographicPoint start,
+											 GeographicPoint goal,
+											 Consumer<GeographicPoint> nodeSearched)
+	{
+		return shortestPath(start, goal, true, nodeSearched);
+	}
+
+	/*
+	 *  Dijkstra, or A* with the straight line distance when useHeuristic is
+	 *  set.  The intersections reached are numbered in the order they are
+	 *  reached, and the state of the search is kept in arrays indexed by
+	 *  those numbers, so it grows with the search and not with the map.
+	 */
+	private List<GeographicPoint> shortestPath(GeographicPoint start,
+											   GeographicPoint goal,
+											   boolean useHeuristic,
+											   Consumer<GeographicPoint> nodeSearched)
+	{
+		if (!isVertex(start) || !isVertex(goal)) return null;
+
+		Reached reached = new Reached();
+		int s = reached.add(start.getX(), start.getY());
+		int t = reached.add(goal.getX(), goal.getY());
+		double goalLat = goal.getX();
+		double goalLon = goal.getY();
+		IndexedPriorityQueue q = new DaryHeap(4, 1024);
+		reached.dist[s] = 0.0;
+		q.insert(s, 0.0);
+
+		while(!q.isEmpty()){
+			int curr = q.removeMin();
+			reached.settled[curr] = true;
+			double lat = reached.lat[curr];
+			double lon = reached.lon[curr];
+			nodeSearched.accept(new GeographicPoint(lat, lon));
+			if(curr == t){
+				return reached.path(s, t);
+			}
+			Tile tile = tileAt(lat, lon);
+			int v = tile.index.get(lat, lon);
+			double currDist = reached.dist[curr];
+			for(int e=tile.offsets[v];e<tile.offsets[v+1];e++){
+				double lat2 = tile.targetLat(e);
+				double lon2 = tile.targetLon(e);
+				int n2 = reached.add(lat2, lon2);
+				double d = currDist + tile.lengths[e];
+				if(!reached.settled[n2] && d < reached.dist[n2]){
+					reached.dist[n2] = d;
+					reached.parent[n2] = curr;
+					double h = useHeuristic ?
+							GeographicPoint.getDist(lat2, lon2, goalLat, goalLon) : 0.0;
+					q.insertOrDecrease(n2, d + h);
+				}
+			}
+		}
+		return null;
+	}
+
+	// Whether the map has an intersection at p
+	private boolean isVertex(GeographicPoint p)
+	{
+		if (p == null) return false;
+		Tile tile = tileAt(p.getX(), p.getY());
+		return tile != null && tile.index.get(p) >= 0;
+	}
+
+	/*
+	 *  The intersections one search has reached, by the order they were
+	 *  reached in
+	 */
+	private static class Reached {
+		final PointIndex index = new PointIndex(1024);
+		int size;
+		double[] lat = new double[1024];
+		double[] lon = new double[1024];
+		double[] dist = new double[1024];
+		int[] parent = new int[1024];
+		boolean[] settled = new boolean[1024];
+
+		/*
+		 *  The number of a location, giving it the next one if it is new
+		 */
+		int add(double latitude, double longitude)
+		{
+			int id = index.getOrAdd(latitude, longitude);
+			if (id == size) {
+				size++;
+				if (id == lat.length) {
+					int size = lat.length * 2;
+					lat = Arrays.copyOf(lat, size);
+					lon = Arrays.copyOf(lon, size);
+					dist = Arrays.copyOf(dist, size);
+					parent = Arrays.copyOf(parent, size);
+					settled = Arrays.copyOf(settled, size);
+				}
+				lat[id] = latitude;
+				lon[id] = longitude;
+				dist[id] = Double.POSITIVE_INFINITY;
+				parent[id] = -1;
+			}
+			return id;
+		}
+
+		/*
+		 *  Walk the parents back from goal to start
+		 */
+		List<GeographicPoint> path(int start, int goal)
+		{
+			ArrayList<GeographicPoint> path = new ArrayList<GeographicPoint>();
+			for (int v = goal; v != start; v = parent[v]) {
+				path.add(new GeographicPoint(lat[v], lon[v]));
+			}
+			path.add(new GeographicPoint(lat[start], lon[start]));
+			Collections.reverse(path);
+			return path;
+		}
+	}
+
+	/*
+	 *  One tile, read whole into primitive arrays
+	 */
+	private static class Tile {
+		final int numVertices;
+		final double[] lat, lon;
+		final double[] boundaryLat, boundaryLon;
+		final int[] offsets;
+		final int[] targets;
+		final double[] lengths;
+		final String[] roadNames;
+		final String[] roadTypes;
+		final PointIndex index;		//location -> vertex of this tile
+
+		Tile(File file) throws IOException
+		{
+			ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+			if (in.capacity() < TILE_HEADER_BYTES || in.getInt() != TILE_MAGIC) {
+				throw new IOException("Not a map tile: " + file);
+			}
+			int version = in.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported map tile version " + version + " in " + file);
+			}
+			int n = in.getInt();
+			int m = in.getInt();
+			int b = in.getInt();
+			int numStrings = in.getInt();
+			long stringsStart = TILE_HEADER_BYTES + 16L * (n + b) + 4L * (n + 1) + 20L * m;
+			if (n < 0 || m < 0 || b < 0 || numStrings < 0 || stringsStart > in.capacity()) {
+				throw new IOException("Truncated map tile: " + file);
+			}
+			numVertices = n;
+			lat = BinaryTables.doubles(in, n);
+			lon = BinaryTables.doubles(in, n);
+			boundaryLat = BinaryTables.doubles(in, b);
+			boundaryLon = BinaryTables.doubles(in, b);
+			offsets = BinaryTables.ints(in, n + 1);
+			targets = BinaryTables.ints(in, m);
+			lengths = BinaryTables.doubles(in, m);
+			int[] names = BinaryTables.ints(in, m);
+			int[] types = BinaryTables.ints(in, m);
+
+			String[] strings = BinaryTables.readStrings(in, numStrings, "map tile: " + file);
+			roadNames = new String[m];
+			roadTypes = new String[m];
+			for (int e = 0; e < m; e++) {
+				roadNames[e] = strings[names[e]];
+				roadTypes[e] = strings[types[e]];
+			}
+
+			index = new PointIndex(n);
+			for (int v = 0; v < n; v++) {
+				index.getOrAdd(lat[v], lon[v]);
+			}
+		}
+
+		double targetLat(int e)
+		{
+			int w = targets[e];
+			return w < numVertices ? lat[w] : boundaryLat[w - numVertices];
+		}
+
+		double targetLon(int e)
+		{
+			int w = targets[e];
+			return w < numVertices ? lon[w] : boundaryLon[w - numVertices];
+		}
+	}
+
+	/**
+	 * Split a bundled map into tiles and check that searching the tiles,
+	 * with only a few in memory at a time, finds paths as short as the
+	 * MapGraph's.
+	 * @param args Optionally the .map file, the tile size in degrees and
+	 *   the number of tiles to keep in memory
+	 * @throws IOException If the tiles can not be written
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		String mapFile = args.length > 0 ? args[0] : "data/maps/hollywood_large.map";
+		double tileDegrees = args.length > 1 ? Double.parseDouble(args[1]) : 0.01;
+		int maxTiles = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+		File dir = Files.createTempDirectory("tiles").toFile();
+
+		MapGraph map = new MapGraph();
+		GraphLoader.loadRoadMap(mapFile, map);
+		long t0 = System.nanoTime();
+		write(map, dir.getPath(), tileDegrees);
+		long t1 = System.nanoTime();
+		TiledMap tiled = open(dir.getPath(), maxTiles);
+
+		System.out.println(mapFile + ": " + tiled.getNumVertices() + " vertices, "
+				+ tiled.getNumEdges() + " edges in " + tiled.getNumTiles() + " tiles of "
+				+ tileDegrees + " degrees, at most " + maxTiles + " in memory");
+		System.out.printf("  write tiles          %8.1f ms%n", (t1 - t0) / 1e6);
+
+		List<GeographicPoint> vertices = new ArrayList<GeographicPoint>(map.getVertices());
+		Random rand = new Random(42);
+		int differ = 0;
+		long graphTime = 0, tiledTime = 0;
+		for (int i = 0; i < 200; i++) {
+			GeographicPoint s = vertices.get(rand.nextInt(vertices.size()));
+			GeographicPoint t = vertices.get(rand.nextInt(vertices.size()));
+			long a = System.nanoTime();
+			List<GeographicPoint> expected = map.aStarSearch(s, t);
+			long b = System.nanoTime();
+			List<GeographicPoint> path = tiled.aStarSearch(s, t);
+			long c = System.nanoTime();
+			graphTime += b - a;
+			tiledTime += c - b;
+			if ((expected == null) != (path == null)
+					|| (path != null && Math.abs(length(map, path) - length(map, expected)) > 1e-9)) {
+				differ++;
+			}
+		}
+		System.out.printf("  200 A* on MapGraph   %8.1f ms%n", graphTime / 1e6);
+		System.out.printf("  200 A* on tiles      %8.1f ms, %d tile reads%n", tiledTime / 1e6,
+				tiled.getTileLoads());
+		System.out.println("  paths of a different length: " + differ + "/200");
+
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+	}
+
+	// The length of a path along the graph's edges
+	private static double length(MapGraph map, List<GeographicPoint> path)
+	{
+		double length = 0.0;
+		for (int i = 0; i + 1 < path.size(); i++) {
+			length += map.getNode(path.get(i)).getEdgeTo(map.getNode(path.get(i + 1))).getLength();
+		}
+		return length;
+	}
+}
@@ -0,0 +1,103 @@
+package util;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * The pieces of the binary map formats that they all share: the string
+ * table of road names and types, and bulk reads of int and double arrays.
+ * Used by RoadMapCache here and by CompiledMap and TiledMap in roadgraph.
+ *
+ * A string table is written in the order the strings were interned, each
+ * as its length in bytes followed by its UTF-8 bytes; the files store the
+ * strings' numbers in place of the strings.
+ *
+ */
+public final class BinaryTables {
+
+	private BinaryTables() {}
+
+	/**
+	 * Give a string the next number in a table, if it has none yet
+	 * @param table String -> number, in order of first use (a LinkedHashMap)
+	 * @param s The string
+	 */
+	public static void intern(Map<String,Integer> table, String s)
+	{
+		if (!table.containsKey(s)) {
+			table.put(s, table.size());
+		}
+	}
+
+	/**
+	 * Write the strings of a table in the order of their numbers
+	 * @param table The table filled in by intern
+	 * @param out Where to write it
+	 * @throws IOException If it can not be written
+	 */
+	public static void writeStrings(Map<String,Integer> table, DataOutputStream out)
+			throws IOException
+	{
+		for (String s : table.keySet()) {
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Read a string table written by writeStrings
+	 * @param in The buffer, positioned at the start of the table.  It is
+	 *   left just past the table.
+	 * @param count The number of strings
+	 * @param source What is being read, for the error message
+	 * @return The strings, indexed by their numbers
+	 * @throws IOException If the buffer ends before the table does
+	 */
+	public static String[] readStrings(ByteBuffer in, int count, String source)
+			throws IOException
+	{
+		String[] strings = new String[count];
+		for (int i = 0; i < count; i++) {
+			int length = in.remaining() < 4 ? -1 : in.getInt();
+			if (length < 0 || length > in.remaining()) {
+				throw new IOException("Truncated " + source);
+			}
+			byte[] bytes = new byte[length];
+			in.get(bytes);
+			strings[i] = new String(bytes, StandardCharsets.UTF_8);
+		}
+		return strings;
+	}
+
+	/**
+	 * Bulk copy the next count doubles and move past them
+	 * @param in The buffer to read from
+	 * @param count The number of values
+	 * @return The values
+	 */
+	public static double[] doubles(ByteBuffer in, int count)
+	{
+		double[] values = new double[count];
+		in.asDoubleBuffer().get(values);
+		in.position(in.position() + 8 * count);
+		return values;
+	}
+
+	/**
+	 * Bulk copy the next count ints and move past them
+	 * @param in The buffer to read from
+	 * @param count The number of values
+	 * @return The values
+	 */
+	public static int[] ints(ByteBuffer in, int count)
+	{
+		int[] values = new int[count];
+		in.asIntBuffer().get(values);
+		in.position(in.position() + 4 * count);
+		return values;
+	}
+}
@@ -0,0 +1,364 @@
+package util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import geography.GeographicPoint;
+import geography.PointIndex;
+
+/**
+ * The lines of a .map file, with the end points of every line interned
+ * as dense point ids by a PointIndex.  GraphLoader finds the intersections
+ * and traces the edges between them on these ids; a GeographicPoint is
+ * only made once for each distinct point.
+ *
+ * Point ids are handed out in the order the points first appear in the
+ * file, and the lines at each point are kept in file order.
+ *
+ */
+class RoadLines {
+	// Bytes of a .map file parsed by one task
+	private static final int PARSE_CHUNK_BYTES = 1 << 16;
+
+	final PointIndex index = new PointIndex();
+	final GeographicPoint[] points;		//point id -> location
+
+	final int numLines;
+	final int[] from;			//line -> id of its first point
+	final int[] to;				//line -> id of its second point
+	final String[] roadNames;
+	final String[] roadTypes;
+
+	// The lines leaving point p are outLines[outStart[p]] .. outLines[outStart[p+1]-1]
+	// and those arriving are inLines[inStart[p]] .. inLines[inStart[p+1]-1]
+	final int[] outStart, outLines;
+	final int[] inStart, inLines;
+
+	/**
+	 * Parse the contents of a .map file.  The data is cut at line ends into
+	 * chunks that are tokenized in parallel, then the points are interned
+	 * in file order.
+	 * @param data The bytes of the file
+	 */
+	RoadLines(byte[] data)
+	{
+		List<ParsedChunk> chunks = parseChunks(data);
+		int total = 0;
+		for (ParsedChunk chunk : chunks) {
+			total += chunk.count;
+		}
+		numLines = total;
+		from = new int[numLines];
+		to = new int[numLines];
+		roadNames = new String[numLines];
+		roadTypes = new String[numLines];
+
+		List<GeographicPoint> locations = new ArrayList<GeographicPoint>();
+		int line = 0;
+		for (ParsedChunk chunk : chunks) {
+			for (int i = 0; i < chunk.count; i++, line++) {
+				double[] c = chunk.coords;
+				from[line] = intern(c[4*i], c[4*i+1], locations);
+				to[line] = intern(c[4*i+2], c[4*i+3], locations);
+				roadNames[line] = chunk.roadNames[i];
+				roadTypes[line] = chunk.roadTypes[i];
+			}
+		}
+		points = locations.toArray(new GeographicPoint[locations.size()]);
+
+		outStart = new int[points.length + 1];
+		outLines = groupBy(from, outStart);
+		inStart = new int[points.length + 1];
+		inLines = groupBy(to, inStart);
+	}
+
+	/**
+	 * @return The number of distinct points
+	 */
+	int getNumPoints()
+	{
+		return points.length;
+	}
+
+	/**
+	 * Classify every point, in parallel.  Intersections are either dead
+	 * ends (1 road in and 1 road out, which are the reverse of each other)
+	 * or intersections between two different roads, or where three or
+	 * more segments of the same road meet.
+	 * @return isIntersection[p] for each point id p
+	 */
+	boolean[] findIntersections()
+	{
+		boolean[] isNode = new boolean[points.length];
+		IntStream.range(0, points.length).parallel().forEach(p -> isNode[p] = isIntersection(p));
+		return isNode;
+	}
+
+	/*
+	 *  Points are not intersections when they have exactly 1 or 2 roads
+	 *  coming in and out, where the roads in match the roads out.
+	 */
+	private boolean isIntersection(int p)
+	{
+		int numOut = outStart[p+1] - outStart[p];
+		int numIn = inStart[p+1] - inStart[p];
+
+		if (numIn == 1 && numOut == 1) {
+			// If these are the reverse of each other, then this is
+			// an intersection (dead end)
+			int in = inLines[inStart[p]];
+			int out = outLines[outStart[p]];
+			if (!(from[in] == to[out] && to[in] == from[out])
+					&& roadNames[in].equals(roadNames[out])) {
+				return false;
+			}
+		}
+		if (numIn == 2 && numOut == 2) {
+			// If all the road segments have the same name,
+			// And there are two pairs of reversed nodes, then
+			// this is not an intersection because the roads pass
+			// through.
+			int in1 = inLines[inStart[p]];
+			int in2 = inLines[inStart[p] + 1];
+			int out1 = outLines[outStart[p]];
+			int out2 = outLines[outStart[p] + 1];
+
+			String name = roadNames[in1];
+			boolean sameName = name.equals(roadNames[in2]) && name.equals(roadNames[out1])
+					&& name.equals(roadNames[out2]);
+			boolean passThrough = (isReverse(in1, out1) && isReverse(in2, out2)) ||
+					(isReverse(in1, out2) && isReverse(in2, out1));
+			if (sameName && passThrough) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Whether line b is the same road as line a, in the other direction
+	private boolean isReverse(int a, int b)
+	{
+		return from[a] == to[b] && to[a] == from[b] &&
+				roadNames[a].equals(roadNames[b]) && roadTypes[a].equals(roadTypes[b]);
+	}
+
+	/**
+	 * Put point ids in the order a HashSet of their GeographicPoints,
+	 * filled in the order given, iterates in.  The loader has always added
+	 * vertices and edges in the iteration order of hashed point collections,
+	 * so this keeps vertex ids, and the paths found on the loaded graphs,
+	 * exactly as they were.
+	 * @param ids The point ids, in the order they would be added
+	 * @return The same ids, reordered
+	 */
+	int[] inHashOrder(int[] ids)
+	{
+		HashSet<GeographicPoint> set = new HashSet<GeographicPoint>();
+		for (int p : ids) {
+			set.add(points[p]);
+		}
+		int[] ordered = new int[set.size()];
+		int i = 0;
+		for (GeographicPoint pt : set) {
+			ordered[i++] = index.get(pt);
+		}
+		return ordered;
+	}
+
+	/**
+	 * Trace every road leaving each of the starts to the next intersection,
+	 * in parallel.
+	 * @param starts Intersection ids
+	 * @param isNode Which points are intersections
+	 * @return One list per start, in the order of starts, holding its
+	 *   edges in the file order of its outgoing lines
+	 */
+	List<List<TracedEdge>> traceEdges(int[] starts, boolean[] isNode)
+	{
+		// Only reads this and isNode, so the tracing can share them
+		return IntStream.range(0, starts.length).parallel().mapToObj(i -> {
+			int pt = starts[i];
+			List<TracedEdge> edges = new ArrayList<TracedEdge>(outStart[pt+1] - outStart[pt]);
+			for (int k = outStart[pt]; k < outStart[pt+1]; k++) {
+				edges.add(trace(outLines[k], isNode));
+			}
+			return edges;
+		}).collect(Collectors.toList());
+	}
+
+	/*
+	 *  Follow line from its first point through the points that are not
+	 *  intersections, taking the road that does not lead straight back,
+	 *  until an intersection is reached.
+	 */
+	private TracedEdge trace(int line, boolean[] isNode)
+	{
+		int start = from[line];
+		int pt = start;
+		int end = to[line];
+		int[] geometry = new int[4];
+		int numGeometry = 0;
+		while (!isNode[end]) {
+			if (numGeometry == geometry.length) {
+				geometry = Arrays.copyOf(geometry, numGeometry * 2);
+			}
+			geometry[numGeometry++] = end;
+			int first = outStart[end];
+			int numOut = outStart[end+1] - first;
+			int next = outLines[first];
+			if (numOut == 2) {
+				if (to[next] == pt) {
+					next = outLines[first + 1];
+				}
+			}
+			else if (numOut != 1) {
+				System.out.println("Something went wrong building edges");
+			}
+			pt = end;
+			end = to[next];
+		}
+
+		// Calculate the length of this road segment taking into account all of the
+		// intermediate geographic points.
+		double length = 0.0;
+		GeographicPoint curr = points[start];
+		for (int i = 0; i < numGeometry; i++) {
+			length += curr.distance(points[geometry[i]]);
+			curr = points[geometry[i]];
+		}
+		length += curr.distance(points[end]);
+
+		return new TracedEdge(start, end, line, Arrays.copyOf(geometry, numGeometry), length);
+	}
+
+	/**
+	 * @param ids Point ids
+	 * @return The locations of the points
+	 */
+	List<GeographicPoint> getPoints(int[] ids)
+	{
+		List<GeographicPoint> list = new ArrayList<GeographicPoint>(ids.length);
+		for (int p : ids) {
+			list.add(points[p]);
+		}
+		return list;
+	}
+
+	/*
+	 *  The id of a location, making its GeographicPoint if it is new
+	 */
+	private int intern(double lat, double lon, List<GeographicPoint> locations)
+	{
+		int id = index.getOrAdd(lat, lon);
+		if (id == locations.size()) {
+			locations.add(new GeographicPoint(lat, lon));
+		}
+		return id;
+	}
+
+	/*
+	 *  Counting sort of the line numbers by key, which keeps them in file
+	 *  order within each key.  Fills in start[] and returns the lines.
+	 */
+	private static int[] groupBy(int[] key, int[] start)
+	{
+		for (int k : key) {
+			start[k + 1]++;
+		}
+		for (int p = 0; p + 1 < start.length; p++) {
+			start[p + 1] += start[p];
+		}
+		int[] next = Arrays.copyOf(start, start.length - 1);
+		int[] lines = new int[key.length];
+		for (int line = 0; line < key.length; line++) {
+			lines[next[key[line]]++] = line;
+		}
+		return lines;
+	}
+
+	/*
+	 *  Cut data into chunks at line ends and tokenize them in parallel.
+	 *  The chunks are returned in file order.
+	 */
+	private static List<ParsedChunk> parseChunks(byte[] data)
+	{
+		List<int[]> bounds = new ArrayList<int[]>();	// start, end, first line
+		int start = 0;
+		int line = 1;
+		while (start < data.length) {
+			int end = Math.min(data.length, start + PARSE_CHUNK_BYTES);
+			while (end < data.length && data[end-1] != '\n') {
+				end++;
+			}
+			bounds.add(new int[] {start, end, line});
+			for (int i = start; i < end; i++) {
+				if (data[i] == '\n') line++;
+			}
+			start = end;
+		}
+		return bounds.parallelStream().map(b -> new ParsedChunk(data, b[0], b[1], b[2]))
+				.collect(Collectors.toList());
+	}
+
+	/*
+	 *  The fields of the lines in one chunk, in primitive arrays
+	 */
+	private static class ParsedChunk {
+		int count;
+		double[] coords = new double[4 * 256];		//lat1, lon1, lat2, lon2 of each line
+		String[] roadNames = new String[256];
+		String[] roadTypes = new String[256];
+
+		ParsedChunk(byte[] data, int start, int end, int firstLine)
+		{
+			RoadMapTokenizer tokenizer = new RoadMapTokenizer(
+					new ByteArrayInputStream(data, start, end - start), firstLine);
+			try {
+				while (tokenizer.next()) {
+					if (count == roadNames.length) {
+						coords = Arrays.copyOf(coords, coords.length * 2);
+						roadNames = Arrays.copyOf(roadNames, count * 2);
+						roadTypes = Arrays.copyOf(roadTypes, count * 2);
+					}
+					coords[4*count] = tokenizer.getLat1();
+					coords[4*count+1] = tokenizer.getLon1();
+					coords[4*count+2] = tokenizer.getLat2();
+					coords[4*count+3] = tokenizer.getLon2();
+					roadNames[count] = tokenizer.getRoadName();
+					roadTypes[count] = tokenizer.getRoadType();
+					count++;
+				}
+			} catch (IOException e) {
+				// A ByteArrayInputStream does not throw
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * An edge traced from one intersection to the next
+	 */
+	static class TracedEdge {
+		final int start;			//point ids of the intersections at each end
+		final int end;
+		final int line;				//the first line of the edge, which names the road
+		final int[] geometry;		//ids of the points between start and end
+		final double length;
+
+		TracedEdge(int start, int end, int line, int[] geometry, double length)
+		{
+			this.start = start;
+			this.end = end;
+			this.line = line;
+			this.geometry = geometry;
+			this.length = length;
+		}
+	}
+}
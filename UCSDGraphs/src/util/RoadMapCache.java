@@ -0,0 +1,441 @@
+package util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import basicgraph.Graph;
+import geography.GeographicPoint;
+import geography.RoadSegment;
+import roadgraph.MapGraph;
+import util.RoadLines.TracedEdge;
+
+/**
+ * What loading a .map file gives: its intersections and the edges traced
+ * between them, with their road geometry, in the order the loader adds
+ * them.  Finding the intersections and tracing the edges is most of the
+ * cost of a load, so the result is saved to a cache file and later loads
+ * of the same .map file read that instead.  Replaying the cache makes the
+ * same addVertex and addEdge calls in the same order as a full parse, so
+ * the graphs loaded either way are identical, down to node ids.
+ *
+ * A cache file records the size, modification time and CRC32 of the
+ * .map file it was made from.  The .map file is always read and its CRC32
+ * computed, which is a small part of the cost of parsing it, and the
+ * cache is used only when the size and CRC32 both match, so an edit is
+ * never missed however close in time it is to the last load.  Otherwise
+ * the .map file is parsed again and the cache rewritten.
+ *
+ * Cache files go in a .roadcache directory next to the .map file, so they
+ * stay with the project's data, or in the directory named by the system
+ * property roadmap.cache.dir.  Setting roadmap.cache to false turns the
+ * cache off.
+ *
+ * File layout, all numbers big-endian:
+ * <pre>
+ *   header   int magic, int version, long sourceSize, long sourceModified,
+ *            long sourceHash, int numVertices, int numEdges,
+ *            int numGeometryPoints, int numStrings
+ *   vertices double lat[numVertices], double lon[numVertices]
+ *   edges    int from[numEdges], int to[numEdges], int name[numEdges],
+ *            int type[numEdges], double length[numEdges],
+ *            int geometryOffsets[numEdges+1]
+ *   geometry double lat[numGeometryPoints], double lon[numGeometryPoints]
+ *   strings  numStrings times: int byteLength, UTF-8 bytes
+ * </pre>
+ * Vertices are in the order they are added and edges in the order they
+ * are added, which keeps the edges of each start vertex together.
+ *
+ */
+class RoadMapCache {
+	private static final int MAGIC = 0x55435243;	//"UCRC"
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 2 * 4 + 3 * 8 + 4 * 4;
+
+	// The .map file this was loaded from
+	private long sourceSize;
+	private long sourceModified;
+	private long sourceHash;
+
+	final GeographicPoint[] points;		//vertex -> location, in the order added
+	final int numEdges;
+	final int[] from;
+	final int[] to;
+	final String[] roadNames;
+	final String[] roadTypes;
+	final double[] lengths;
+	private final int[] geometryStart;	//edge e's geometry is geometryStart[e] .. geometryStart[e+1]-1
+	private final double[] geometryLat;
+	private final double[] geometryLon;
+
+	/*
+	 *  Find the intersections of parsed lines and trace the edges between
+	 *  them.  The vertices are in the iteration order of a HashMap keyed by
+	 *  all the points, and the edges start from the vertices in the
+	 *  iteration order of a HashSet of their locations, as they always have.
+	 */
+	private RoadMapCache(RoadLines lines)
+	{
+		boolean[] isNode = lines.findIntersections();
+		int[] intersections = findIntersections(lines, isNode);
+		points = new GeographicPoint[intersections.length];
+		int[] vertexOf = new int[lines.getNumPoints()];
+		for (int v = 0; v < intersections.length; v++) {
+			points[v] = lines.points[intersections[v]];
+			vertexOf[intersections[v]] = v;
+		}
+
+		List<List<TracedEdge>> traced = lines.traceEdges(lines.inHashOrder(intersections), isNode);
+		int m = 0;
+		int numGeometryPoints = 0;
+		for (List<TracedEdge> outgoing : traced) {
+			for (TracedEdge edge : outgoing) {
+				m++;
+				numGeometryPoints += edge.geometry.length;
+			}
+		}
+		numEdges = m;
+		from = new int[m];
+		to = new int[m];
+		roadNames = new String[m];
+		roadTypes = new String[m];
+		lengths = new double[m];
+		geometryStart = new int[m + 1];
+		geometryLat = new double[numGeometryPoints];
+		geometryLon = new double[numGeometryPoints];
+		int e = 0;
+		int g = 0;
+		for (List<TracedEdge> outgoing : traced) {
+			for (TracedEdge edge : outgoing) {
+				from[e] = vertexOf[edge.start];
+				to[e] = vertexOf[edge.end];
+				roadNames[e] = lines.roadNames[edge.line];
+				roadTypes[e] = lines.roadTypes[edge.line];
+				lengths[e] = edge.length;
+				for (int p : edge.geometry) {
+					geometryLat[g] = lines.points[p].getX();
+					geometryLon[g] = lines.points[p].getY();
+					g++;
+				}
+				geometryStart[++e] = g;
+			}
+		}
+	}
+
+	/*
+	 *  Decode a cache file whose header has been checked
+	 */
+	private RoadMapCache(ByteBuffer in) throws IOException
+	{
+		in.position(8);
+		sourceSize = in.getLong();
+		sourceModified = in.getLong();
+		sourceHash = in.getLong();
+		int n = in.getInt();
+		int m = in.getInt();
+		int numGeometryPoints = in.getInt();
+		int numStrings = in.getInt();
+		long stringsStart = HEADER_BYTES + 16L * n + 28L * m + 4 + 16L * numGeometryPoints;
+		if (n < 0 || m < 0 || numGeometryPoints < 0 || numStrings < 0
+				|| stringsStart > in.capacity()) {
+			throw new IOException("Truncated road map cache");
+		}
+		double[] lat = BinaryTables.doubles(in, n);
+		double[] lon = BinaryTables.doubles(in, n);
+		points = new GeographicPoint[n];
+		for (int v = 0; v < n; v++) {
+			points[v] = new GeographicPoint(lat[v], lon[v]);
+		}
+		numEdges = m;
+		from = BinaryTables.ints(in, m);
+		to = BinaryTables.ints(in, m);
+		int[] names = BinaryTables.ints(in, m);
+		int[] types = BinaryTables.ints(in, m);
+		lengths = BinaryTables.doubles(in, m);
+		geometryStart = BinaryTables.ints(in, m + 1);
+		geometryLat = BinaryTables.doubles(in, numGeometryPoints);
+		geometryLon = BinaryTables.doubles(in, numGeometryPoints);
+
+		String[] strings = BinaryTables.readStrings(in, numStrings, "road map cache");
+		roadNames = new String[m];
+		roadTypes = new String[m];
+		for (int e = 0; e < m; e++) {
+			if (from[e] < 0 || from[e] >= n || to[e] < 0 || to[e] >= n
+					|| names[e] < 0 || names[e] >= numStrings || types[e] < 0 || types[e] >= numStrings
+					|| geometryStart[e] < 0 || geometryStart[e] > geometryStart[e+1]
+					|| geometryStart[e+1] > numGeometryPoints) {
+				throw new IOException("Corrupt road map cache");
+			}
+			roadNames[e] = strings[names[e]];
+			roadTypes[e] = strings[types[e]];
+		}
+	}
+
+	/**
+	 * Get what loading a .map file gives, from its cache file if that is
+	 * up to date, otherwise by parsing it and then saving the cache file.
+	 * A .map file that can not be read loads as an empty map.
+	 * @param filename The .map file
+	 * @return The intersections and edges of the map
+	 */
+	static RoadMapCache load(String filename)
+	{
+		Path source = Paths.get(filename);
+		File cacheFile = cacheFileFor(source);
+		byte[] data;
+		long modified = 0;
+		try {
+			data = Files.readAllBytes(source);
+			modified = Files.getLastModifiedTime(source).toMillis();
+		} catch (IOException e) {
+			System.err.println("Problem loading dictionary file: " + filename);
+			e.printStackTrace();
+			data = new byte[0];
+			cacheFile = null;
+		}
+		long hash = hash(data);
+
+		if (cacheFile != null) {
+			ByteBuffer cached = readCacheFile(cacheFile);
+			if (cached != null && cached.getLong(8) == data.length && cached.getLong(24) == hash) {
+				try {
+					return new RoadMapCache(cached);
+				} catch (IOException | RuntimeException e) {
+					// A damaged cache file is made again
+				}
+			}
+		}
+
+		RoadMapCache map = new RoadMapCache(new RoadLines(data));
+		map.sourceSize = data.length;
+		map.sourceModified = modified;
+		map.sourceHash = hash;
+		if (cacheFile != null) {
+			map.save(cacheFile);
+		}
+		return map;
+	}
+
+	/*
+	 *  The cache file for a .map file, or null if caching is turned off
+	 */
+	private static File cacheFileFor(Path source)
+	{
+		if ("false".equalsIgnoreCase(System.getProperty("roadmap.cache"))) {
+			return null;
+		}
+		Path absolute = source.toAbsolutePath().normalize();
+		String dir = System.getProperty("roadmap.cache.dir");
+		if (dir == null) {
+			return new File(new File(absolute.getParent().toFile(), ".roadcache"),
+					absolute.getFileName() + ".roadcache");
+		}
+		// A shared directory: tell .map files with the same name apart
+		return new File(dir, absolute.getFileName() + "-"
+				+ Integer.toHexString(absolute.toString().hashCode()) + ".roadcache");
+	}
+
+	/*
+	 *  The contents of a cache file written by this version, or null
+	 */
+	private static ByteBuffer readCacheFile(File cacheFile)
+	{
+		if (!cacheFile.isFile()) return null;
+		try {
+			ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(cacheFile.toPath()));
+			if (in.capacity() < HEADER_BYTES || in.getInt(0) != MAGIC || in.getInt(4) != VERSION) {
+				return null;
+			}
+			return in;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private static long hash(byte[] data)
+	{
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, data.length);
+		return crc.getValue();
+	}
+
+	/*
+	 *  Write the cache file, through a temporary file so a load running at
+	 *  the same time never reads half of it.  A cache that can not be
+	 *  written is only a missed speed up.
+	 */
+	private void save(File cacheFile)
+	{
+		File dir = cacheFile.getParentFile();
+		File temp = null;
+		try {
+			if (!dir.isDirectory() && !dir.mkdirs()) return;
+			temp = File.createTempFile("roadmap", ".tmp", dir);
+			write(temp);
+			try {
+				Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			if (temp != null) {
+				temp.delete();
+			}
+		}
+	}
+
+	private void write(File file) throws IOException
+	{
+		//String table, in order of first use
+		LinkedHashMap<String,Integer> table = new LinkedHashMap<String,Integer>();
+		for (int e = 0; e < numEdges; e++) {
+			BinaryTables.intern(table, roadNames[e]);
+			BinaryTables.intern(table, roadTypes[e]);
+		}
+		int n = points.length;
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(sourceSize);
+			out.writeLong(sourceModified);
+			out.writeLong(sourceHash);
+			out.writeInt(n);
+			out.writeInt(numEdges);
+			out.writeInt(geometryLat.length);
+			out.writeInt(table.size());
+
+			for (int v = 0; v < n; v++) out.writeDouble(points[v].getX());
+			for (int v = 0; v < n; v++) out.writeDouble(points[v].getY());
+
+			for (int e = 0; e < numEdges; e++) out.writeInt(from[e]);
+			for (int e = 0; e < numEdges; e++) out.writeInt(to[e]);
+			for (int e = 0; e < numEdges; e++) out.writeInt(table.get(roadNames[e]));
+			for (int e = 0; e < numEdges; e++) out.writeInt(table.get(roadTypes[e]));
+			for (int e = 0; e < numEdges; e++) out.writeDouble(lengths[e]);
+			for (int e = 0; e <= numEdges; e++) out.writeInt(geometryStart[e]);
+			for (double lat : geometryLat) out.writeDouble(lat);
+			for (double lon : geometryLon) out.writeDouble(lon);
+
+			BinaryTables.writeStrings(table, out);
+		}
+	}
+
+	/**
+	 * Add the intersections and roads to a MapGraph
+	 * @param map The graph to load into
+	 * @param segments If not null, filled in with the road geometry
+	 * @param intersectionsToLoad If not null, filled in with the intersections
+	 */
+	void loadInto(MapGraph map, HashMap<GeographicPoint,HashSet<RoadSegment>> segments,
+				  Set<GeographicPoint> intersectionsToLoad)
+	{
+		for (GeographicPoint pt : points) {
+			map.addVertex(pt);
+			if (intersectionsToLoad != null) {
+				intersectionsToLoad.add(pt);
+			}
+		}
+
+		for (int e = 0; e < numEdges; e++) {
+			GeographicPoint pt = points[from[e]];
+			GeographicPoint end = points[to[e]];
+			map.addEdge(pt, end, roadNames[e], roadTypes[e], lengths[e]);
+
+			// If the segments variable is not null, then we
+			// save the road geometry
+			if (segments != null) {
+				List<GeographicPoint> geometry = new ArrayList<GeographicPoint>(
+						geometryStart[e+1] - geometryStart[e]);
+				for (int g = geometryStart[e]; g < geometryStart[e+1]; g++) {
+					geometry.add(new GeographicPoint(geometryLat[g], geometryLon[g]));
+				}
+				RoadSegment seg = new RoadSegment(pt, end, geometry,
+						roadNames[e], roadTypes[e], lengths[e]);
+				addSegment(segments, pt, seg);
+				addSegment(segments, end, seg);
+			}
+		}
+	}
+
+	private static void addSegment(HashMap<GeographicPoint,HashSet<RoadSegment>> segments,
+								   GeographicPoint pt, RoadSegment seg)
+	{
+		HashSet<RoadSegment> segs = segments.get(pt);
+		if (segs == null) {
+			segs = new HashSet<RoadSegment>();
+			segments.put(pt, segs);
+		}
+		segs.add(seg);
+	}
+
+	/**
+	 * Add the intersections, numbered in order, and roads to a Graph.  The
+	 * edges are added from the vertices in the iteration order of a HashSet
+	 * of their numbers, as they always have been.
+	 * @param theGraph The graph to load into
+	 */
+	void loadInto(Graph theGraph)
+	{
+		int n = points.length;
+		int[] firstEdge = new int[n];
+		int[] lastEdge = new int[n];
+		for (int e = numEdges - 1; e >= 0; e--) {
+			if (lastEdge[from[e]] == 0) {
+				lastEdge[from[e]] = e + 1;
+			}
+			firstEdge[from[e]] = e;
+		}
+		for (int v = 0; v < n; v++) {
+			theGraph.addVertex();
+		}
+
+		HashSet<Integer> vertexOrder = new HashSet<Integer>();
+		for (int v = 0; v < n; v++) {
+			vertexOrder.add(v);
+		}
+		for (int v : vertexOrder) {
+			for (int e = firstEdge[v]; e < lastEdge[v]; e++) {
+				theGraph.addEdge(from[e], to[e]);
+			}
+		}
+	}
+
+	/*
+	 *  Find all the intersections, in the order the loader has always
+	 *  added them: the iteration order of a HashMap keyed by all the points.
+	 */
+	private static int[] findIntersections(RoadLines lines, boolean[] isNode)
+	{
+		int[] all = new int[lines.getNumPoints()];
+		for (int p = 0; p < all.length; p++) {
+			all[p] = p;
+		}
+		int[] ordered = lines.inHashOrder(all);
+		int numNodes = 0;
+		for (int p : ordered) {
+			if (isNode[p]) {
+				ordered[numNodes++] = p;
+			}
+		}
+		return Arrays.copyOf(ordered, numNodes);
+	}
+}